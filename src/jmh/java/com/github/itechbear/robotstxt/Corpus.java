@@ -0,0 +1,170 @@
+package com.github.itechbear.robotstxt;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// robots.txt bodies for the benchmarks, generated from a fixed seed so that
+// every run measures the same input, with urls to check against them.
+public enum Corpus {
+    // A typical small file.
+    TINY {
+        String Generate(Random random) {
+            return "# Robots for example.com\n" +
+                    "user-agent: *\n" +
+                    "disallow: /private/\n" +
+                    "disallow: /tmp/\n" +
+                    "allow: /private/public.html\n" +
+                    "\n" +
+                    "user-agent: FooBot\n" +
+                    "disallow: /search\n" +
+                    "\n" +
+                    "sitemap: https://example.com/sitemap.xml\n";
+        }
+    },
+    // About 500 KB, the most Google reads of a file, with many groups, rules
+    // and comments.
+    LARGE {
+        String Generate(Random random) {
+            StringBuilder body = new StringBuilder();
+            for (int group = 0; body.length() < 500 * 1024; ++group) {
+                body.append("# Group ").append(group).append('\n');
+                body.append("user-agent: ").append(Agent(group)).append('\n');
+                for (int i = 0; i < 50; ++i) {
+                    body.append(random.nextInt(4) == 0 ? "allow: " : "disallow: ")
+                            .append(Path(random, 4)).append(random.nextInt(8) == 0 ? "*.php$" : "")
+                            .append('\n');
+                }
+                body.append('\n');
+            }
+            return body.toString();
+        }
+    },
+    // One group with thousands of plain prefix rules.
+    MANY_RULES {
+        String Generate(Random random) {
+            StringBuilder body = new StringBuilder("user-agent: *\n");
+            for (int i = 0; i < 5000; ++i) {
+                body.append(random.nextInt(4) == 0 ? "allow: " : "disallow: ").append(Path(random, 4)).append('\n');
+            }
+            return body.toString();
+        }
+    },
+    // Rules with several '*' and trailing '$'.
+    WILDCARD_HEAVY {
+        String Generate(Random random) {
+            StringBuilder body = new StringBuilder("user-agent: *\n");
+            for (int i = 0; i < 1000; ++i) {
+                body.append(random.nextInt(4) == 0 ? "allow: " : "disallow: ");
+                int segments = 1 + random.nextInt(4);
+                for (int j = 0; j < segments; ++j) {
+                    body.append(Path(random, 1)).append('*');
+                }
+                body.append(kWords[random.nextInt(kWords.length)]).append(random.nextBoolean() ? "$" : "").append('\n');
+            }
+            return body.toString();
+        }
+    },
+    // Hundreds of groups of a few agents each.
+    MANY_AGENTS {
+        String Generate(Random random) {
+            StringBuilder body = new StringBuilder();
+            for (int group = 0; group < 500; ++group) {
+                for (int i = 0; i < 3; ++i) {
+                    body.append("user-agent: ").append(Agent(3 * group + i)).append('\n');
+                }
+                for (int i = 0; i < 4; ++i) {
+                    body.append(random.nextBoolean() ? "allow: " : "disallow: ").append(Path(random, 3)).append('\n');
+                }
+            }
+            return body.append("user-agent: *\ndisallow: /\n").toString();
+        }
+    },
+    // A medium file saved with a byte order mark and CRLF line ends. The
+    // mark is only in Bytes(): the String parser takes already decoded text
+    // and does not skip a U+FEFF.
+    BOM_CRLF {
+        boolean HasBom() {
+            return true;
+        }
+
+        String Generate(Random random) {
+            StringBuilder body = new StringBuilder();
+            for (int group = 0; group < 20; ++group) {
+                body.append("User-Agent: ").append(Agent(group)).append("\r\n");
+                for (int i = 0; i < 20; ++i) {
+                    body.append("Disallow: ").append(Path(random, 3)).append("\r\n");
+                }
+                body.append("\r\n");
+            }
+            return body.toString();
+        }
+    };
+
+    private static final String[] kWords = {
+            "admin", "search", "cart", "checkout", "login", "private", "tmp", "img", "css", "js",
+            "index.html", "print", "feed", "tag", "page", "api", "user", "static", "archive", "?sid=",
+    };
+
+    // Number of Urls().
+    public static final int kUrlCount = 256;
+
+    private static final byte[] kUtf8Bom = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private String body_;
+    private byte[] bytes_;
+    private List<String> urls_;
+
+    abstract String Generate(Random random);
+
+    boolean HasBom() {
+        return false;
+    }
+
+    public synchronized String Body() {
+        if (body_ == null) {
+            body_ = Generate(new Random(ordinal()));
+        }
+        return body_;
+    }
+
+    public synchronized byte[] Bytes() {
+        if (bytes_ == null) {
+            byte[] body = Body().getBytes(StandardCharsets.UTF_8);
+            bytes_ = HasBom() ? new byte[kUtf8Bom.length + body.length] : body;
+            if (HasBom()) {
+                System.arraycopy(kUtf8Bom, 0, bytes_, 0, kUtf8Bom.length);
+                System.arraycopy(body, 0, bytes_, kUtf8Bom.length, body.length);
+            }
+        }
+        return bytes_;
+    }
+
+    // Urls of the host, some matching rules of the body, some not.
+    public synchronized List<String> Urls() {
+        if (urls_ == null) {
+            Random random = new Random(-1 - ordinal());
+            urls_ = new ArrayList<>();
+            for (int i = 0; i < kUrlCount; ++i) {
+                urls_.add("https://example.com" + Path(random, 1 + random.nextInt(5))
+                        + (random.nextInt(4) == 0 ? "?q=" + random.nextInt(1000) : ""));
+            }
+        }
+        return urls_;
+    }
+
+    // The agents named in the groups of LARGE and MANY_AGENTS; agent 0 is the
+    // one the benchmarks check for.
+    public static String Agent(int i) {
+        return i == 0 ? "FooBot" : "Bot" + Integer.toString(i, 36);
+    }
+
+    private static String Path(Random random, int depth) {
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < depth; ++i) {
+            path.append('/').append(kWords[random.nextInt(kWords.length)]);
+        }
+        return path.toString();
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.itechbear.robotstxt;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Checking urls of the host against a compiled body. Each operation checks
+// one url, cycling through Corpus.Urls(); the batch benchmarks check all of
+// them per call, but still report per url. See RobotsMatcherBenchmark for the
+// baseline of parsing the body for every check.
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MatchBenchmark {
+    @Param
+    public Corpus corpus;
+
+    @Param
+    public CompiledRobots.Engine engine;
+
+    private static final List<String> kAgent = Collections.singletonList(Corpus.Agent(0));
+    private static final List<String> kAgents = Arrays.asList(
+            Corpus.Agent(0), Corpus.Agent(1), Corpus.Agent(2), Corpus.Agent(100));
+
+    private String[] urls_;
+    private List<String> url_list_;
+    private CompiledRobots compiled_;
+    private int next_;
+
+    @Setup
+    public void SetUp() {
+        url_list_ = corpus.Urls();
+        urls_ = url_list_.toArray(new String[0]);
+        compiled_ = CompiledRobots.Compile(corpus.Body(), engine);
+    }
+
+    private String NextUrl() {
+        String url = urls_[next_];
+        next_ = (next_ + 1) % urls_.length;
+        return url;
+    }
+
+    @Benchmark
+    public boolean Compiled() {
+        return compiled_.AllowedByRobots(kAgent, NextUrl());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.kUrlCount)
+    public boolean[] CompiledBatch() {
+        return compiled_.AllowedByRobots(kAgent, url_list_);
+    }
+
+    // What CompiledBatch competes with: the single url checks in a loop.
+    @Benchmark
+    @OperationsPerInvocation(Corpus.kUrlCount)
+    public void CompiledLoop(Blackhole blackhole) {
+        for (String url : urls_) {
+            blackhole.consume(compiled_.AllowedByRobots(kAgent, url));
+        }
+    }
+
+    @Benchmark
+    public CompiledRobots.Verdict[] CompiledPerAgent() {
+        return compiled_.PerAgentAllowedByRobots(kAgents, NextUrl());
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.itechbear.robotstxt;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.List;
+
+// Checking urls against rules in an OffHeapRobotsStore, next to the same
+// rules on the heap with the TRIE engine, whose lookup the store mirrors.
+// Each operation checks one url, cycling through Corpus.Urls().
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OffHeapBenchmark {
+    @Param
+    public Corpus corpus;
+
+    private static final List<String> kAgent = Collections.singletonList(Corpus.Agent(0));
+
+    private String[] urls_;
+    private CompiledRobots compiled_;
+    private OffHeapRobotsStore store_;
+    private int next_;
+
+    @Setup
+    public void SetUp() {
+        urls_ = corpus.Urls().toArray(new String[0]);
+        compiled_ = CompiledRobots.Compile(corpus.Body(), CompiledRobots.Engine.TRIE);
+        store_ = new OffHeapRobotsStore();
+        store_.Put("example.com", compiled_);
+    }
+
+    private String NextUrl() {
+        String url = urls_[next_];
+        next_ = (next_ + 1) % urls_.length;
+        return url;
+    }
+
+    @Benchmark
+    public boolean OffHeap() {
+        return store_.AllowedByRobots("example.com", kAgent, NextUrl());
+    }
+
+    @Benchmark
+    public boolean Compiled() {
+        return compiled_.AllowedByRobots(kAgent, NextUrl());
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.itechbear.robotstxt;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Parsing and compiling whole bodies.
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+    @Param
+    public Corpus corpus;
+
+    // Only counts the lines, so that the parser itself is measured.
+    private static final class CountingHandler implements RobotsParseSliceHandler {
+        int lines;
+
+        public void HandleRobotsStart() {
+            lines = 0;
+        }
+
+        public void HandleRobotsEnd() {
+        }
+
+        public void HandleUserAgent(int line_num, CharSequence value) {
+            ++lines;
+        }
+
+        public void HandleAllow(int line_num, CharSequence value) {
+            ++lines;
+        }
+
+        public void HandleDisallow(int line_num, CharSequence value) {
+            ++lines;
+        }
+
+        public void HandleSitemap(int line_num, CharSequence value) {
+            ++lines;
+        }
+
+        public void HandleUnknownAction(int line_num, CharSequence action, CharSequence value) {
+            ++lines;
+        }
+    }
+
+    private final CountingHandler handler_ = new CountingHandler();
+
+    @Benchmark
+    public int ParseString() {
+        Util.ParseRobotsTxt(corpus.Body(), handler_);
+        return handler_.lines;
+    }
+
+    @Benchmark
+    public int ParseBytes() {
+        Util.ParseRobotsTxt(corpus.Bytes(), handler_);
+        return handler_.lines;
+    }
+
+    // The String callbacks copy every key and value.
+    @Benchmark
+    public void ParseWithStringHandler(Blackhole blackhole) {
+        Util.ParseRobotsTxt(corpus.Body(), new RobotsMatcher() {
+            public void HandleUserAgent(int line_num, String user_agent) {
+                blackhole.consume(user_agent);
+            }
+        });
+    }
+
+    @Benchmark
+    public CompiledRobots Compile() {
+        return CompiledRobots.Compile(corpus.Body());
+    }
+
+    @Benchmark
+    public CompiledRobots CompileBytes() {
+        return CompiledRobots.Compile(corpus.Bytes());
+    }
+}
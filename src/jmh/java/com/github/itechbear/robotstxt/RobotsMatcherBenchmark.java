@@ -0,0 +1,47 @@
+package com.github.itechbear.robotstxt;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.List;
+
+// The baseline for MatchBenchmark: RobotsMatcher parses the body again for
+// every url, cycling through Corpus.Urls(). Kept apart as it has no engine.
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RobotsMatcherBenchmark {
+    @Param
+    public Corpus corpus;
+
+    private static final List<String> kAgent = Collections.singletonList(Corpus.Agent(0));
+
+    private String body_;
+    private String[] urls_;
+    private final RobotsMatcher matcher_ = new RobotsMatcher();
+    private int next_;
+
+    @Setup
+    public void SetUp() {
+        body_ = corpus.Body();
+        urls_ = corpus.Urls().toArray(new String[0]);
+    }
+
+    @Benchmark
+    public boolean AllowedByRobots() {
+        String url = urls_[next_];
+        next_ = (next_ + 1) % urls_.length;
+        return matcher_.AllowedByRobots(body_, kAgent, url);
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.itechbear.robotstxt;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Util.GetPathParamsQuery() over the urls of a corpus, against the path
+// extraction with a HashSet of delimiters built per search that the lookup
+// tables replaced.
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UrlBenchmark {
+    private String[] urls_;
+
+    @Setup
+    public void SetUp() {
+        List<String> urls = Corpus.LARGE.Urls();
+        urls_ = urls.toArray(new String[0]);
+    }
+
+    @Benchmark
+    public void GetPathParamsQuery(Blackhole blackhole) {
+        for (String url : urls_) {
+            blackhole.consume(Util.GetPathParamsQuery(url));
+        }
+    }
+
+    @Benchmark
+    public void HashSetGetPathParamsQuery(Blackhole blackhole) {
+        for (String url : urls_) {
+            blackhole.consume(HashSetGetPathParamsQuery(url));
+        }
+    }
+
+    private static String HashSetGetPathParamsQuery(String url) {
+        int search_start = 0;
+        if (url.length() >= 2 && url.charAt(0) == '/' && url.charAt(1) == '/') search_start = 2;
+        int early_path = HashSetFindFirstCharOf(url, "/?;", search_start);
+        int protocol_end = url.indexOf("://", search_start);
+        if (early_path < protocol_end) {
+            protocol_end = -1;
+        }
+        if (protocol_end == -1) {
+            protocol_end = search_start;
+        } else {
+            protocol_end += 3;
+        }
+        int path_start = HashSetFindFirstCharOf(url, "/?;", protocol_end);
+        if (path_start != -1) {
+            int hash_pos = url.indexOf('#', search_start);
+            if (hash_pos >= 0 && hash_pos < path_start) return "/";
+            int path_end = (hash_pos == -1) ? url.length() : hash_pos;
+            if (url.charAt(path_start) != '/') {
+                return "/" + url.substring(path_start, path_end);
+            }
+            return url.substring(path_start, path_end);
+        }
+        return "/";
+    }
+
+    private static int HashSetFindFirstCharOf(String hayStack, String needle, int start) {
+        Set<Character> set = new HashSet<>(needle.length());
+        for (char c : needle.toCharArray()) {
+            set.add(c);
+        }
+        for (int i = start; i < hayStack.length(); ++i) {
+            if (set.contains(hayStack.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
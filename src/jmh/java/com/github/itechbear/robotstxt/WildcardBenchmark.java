@@ -0,0 +1,62 @@
+package com.github.itechbear.robotstxt;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// RobotsMatchStrategy.Matches() on a single pattern and path.
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WildcardBenchmark {
+    public enum Case {
+        PREFIX("/private/", "/private/dir/file.html?q=1"),
+        SUFFIX("/*.php$", "/dir/sub/index.php"),
+        MULTI("/*/cart/*checkout*?sid=", "/shop/cart/step/checkout/confirm?sid=42&x=1"),
+        // Many '*' against a long path that never matches.
+        HOSTILE(Repeat("*a", 100) + "*b$", "/" + Repeat("a", 2000));
+
+        final String pattern;
+        final String path;
+
+        Case(String pattern, String path) {
+            this.pattern = pattern;
+            this.path = path;
+        }
+    }
+
+    @Param
+    public Case match_case;
+
+    private String pattern_;
+    private String path_;
+    private final RobotsMatchStrategy.Scratch scratch_ = new RobotsMatchStrategy.Scratch();
+
+    @Setup
+    public void SetUp() {
+        pattern_ = match_case.pattern;
+        path_ = match_case.path;
+    }
+
+    @Benchmark
+    public boolean Matches() {
+        return RobotsMatchStrategy.Matches(path_, pattern_, scratch_);
+    }
+
+    private static String Repeat(String s, int count) {
+        StringBuilder repeated = new StringBuilder();
+        for (int i = 0; i < count; ++i) {
+            repeated.append(s);
+        }
+        return repeated.toString();
+    }
+}
@@ -0,0 +1,275 @@
+package com.github.itechbear.robotstxt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// All allow and disallow patterns of a group compiled into one deterministic
+// automaton, which finds the best allow and disallow match in a single scan of
+// the path, however many '*' the patterns have.
+//
+// The automaton is the subset construction of the position sets that
+// RobotsMatchStrategy.Matches() tracks per pattern: a nondeterministic state
+// (p, j) means the path read so far matches the first j chars of pattern p.
+// A pattern without a trailing '$' matches as soon as its end is reached, so
+// every deterministic state knows the best such match among its positions;
+// patterns with a trailing '$' only count in the state reached at the end of
+// the path. States are built eagerly, over classes of chars that the patterns
+// do not tell apart, up to kMaxStates.
+final class AutomatonRuleIndex extends RuleIndex {
+    // Above this many states, Create() gives up and the group gets a trie.
+    static final int kMaxStates = 2048;
+
+    private static final int kAllow = 0;
+    private static final int kDisallow = 1;
+
+    // Class of each ASCII char; any other char is class 0, which no pattern
+    // char belongs to, as escaped patterns are ASCII.
+    private final byte[] char_classes_;
+    private final int num_classes_;
+    // transitions_[state * num_classes_ + class] is the next state.
+    private final int[] transitions_;
+    // Best packed matches by state and type: of patterns ending in the state,
+    // and of '$' patterns ending there at the end of the path.
+    private final long[] reached_matches_;
+    private final long[] end_matches_;
+    private final int dead_state_;
+
+    private AutomatonRuleIndex(byte[] char_classes, int num_classes, int[] transitions,
+                               long[] reached_matches, long[] end_matches, int dead_state) {
+        this.char_classes_ = char_classes;
+        this.num_classes_ = num_classes;
+        this.transitions_ = transitions;
+        this.reached_matches_ = reached_matches;
+        this.end_matches_ = end_matches;
+        this.dead_state_ = dead_state;
+    }
+
+    // Returns null if the patterns need more than kMaxStates states.
+    static AutomatonRuleIndex Create(CompiledRobots.Rule[] rules) {
+        return new Builder(rules).Build();
+    }
+
+    void Match(CharSequence path, RobotsMatchStrategy.Scratch scratch) {
+        int state = 0;
+        long allow = reached_matches_[kAllow];
+        long disallow = reached_matches_[kDisallow];
+        for (int i = 0; i < path.length() && state != dead_state_; ++i) {
+            char ch = path.charAt(i);
+            int char_class = ch < 0x80 ? char_classes_[ch] : 0;
+            state = transitions_[state * num_classes_ + char_class];
+            allow = Math.max(allow, reached_matches_[2 * state + kAllow]);
+            disallow = Math.max(disallow, reached_matches_[2 * state + kDisallow]);
+        }
+        scratch.allow_match = Math.max(allow, end_matches_[2 * state + kAllow]);
+        scratch.disallow_match = Math.max(disallow, end_matches_[2 * state + kDisallow]);
+    }
+
+    long EstimatedSize() {
+        return 5 * CompiledRobots.kObjectHeaderSize + char_classes_.length
+                + 4L * transitions_.length + 8L * (reached_matches_.length + end_matches_.length);
+    }
+
+    private static final class Builder {
+        // The patterns, without their trailing '$'.
+        private final List<String> bodies_ = new ArrayList<>();
+        private final List<Boolean> anchored_ = new ArrayList<>();
+        private final List<Integer> types_ = new ArrayList<>();
+        private final List<Long> matches_ = new ArrayList<>();
+        // Id of position 0 of each pattern; position j of pattern p is
+        // first_position_[p] + j.
+        private int[] first_position_;
+        private int[] pattern_of_position_;
+
+        private final byte[] char_classes_ = new byte[0x80];
+        // A char of each class but 0.
+        private final List<Character> class_chars_ = new ArrayList<>();
+
+        private final Map<PositionSet, Integer> state_ids_ = new HashMap<>();
+        private final List<int[]> states_ = new ArrayList<>();
+
+        Builder(CompiledRobots.Rule[] rules) {
+            for (CompiledRobots.Rule rule : rules) {
+                int type = rule.type == ParsedRobotsKey.KeyType.ALLOW ? kAllow : kDisallow;
+                AddPattern(type, rule.pattern, rule.line);
+                // The alternative only counts if the pattern does not match, but
+                // then the pattern would have had the higher priority anyway.
+                if (rule.index_alternative != null) {
+                    AddPattern(type, rule.index_alternative, rule.line);
+                }
+            }
+        }
+
+        private void AddPattern(int type, RobotsPattern pattern, int line) {
+            String text = pattern.Text();
+            boolean anchored = text.endsWith("$");
+            bodies_.add(anchored ? text.substring(0, text.length() - 1) : text);
+            anchored_.add(anchored);
+            types_.add(type);
+            matches_.add(Pack(pattern.Length(), line));
+        }
+
+        AutomatonRuleIndex Build() {
+            if (!AssignCharClasses()) {
+                return null;
+            }
+            int num_positions = 0;
+            first_position_ = new int[bodies_.size()];
+            for (int p = 0; p < bodies_.size(); ++p) {
+                first_position_[p] = num_positions;
+                num_positions += bodies_.get(p).length() + 1;
+            }
+            pattern_of_position_ = new int[num_positions];
+            for (int p = 0; p < bodies_.size(); ++p) {
+                Arrays.fill(pattern_of_position_, first_position_[p],
+                        first_position_[p] + bodies_.get(p).length() + 1, p);
+            }
+
+            int num_classes = class_chars_.size() + 1;
+            // The start state has all patterns at position 0.
+            int[] start = new int[bodies_.size()];
+            System.arraycopy(first_position_, 0, start, 0, start.length);
+            StateOf(Closure(start, start.length));
+
+            int[] transitions = new int[16 * num_classes];
+            int[] next = new int[num_positions];
+            for (int state = 0; state < states_.size(); ++state) {
+                if (transitions.length < (state + 1) * num_classes) {
+                    transitions = Arrays.copyOf(transitions, 2 * transitions.length);
+                }
+                for (int char_class = 0; char_class < num_classes; ++char_class) {
+                    int next_count = Step(states_.get(state), char_class, next);
+                    Integer next_state = StateOf(Closure(next, next_count));
+                    if (next_state == null) {
+                        return null;
+                    }
+                    transitions[state * num_classes + char_class] = next_state;
+                }
+            }
+
+            int num_states = states_.size();
+            long[] reached_matches = new long[2 * num_states];
+            long[] end_matches = new long[2 * num_states];
+            Arrays.fill(reached_matches, kNoMatch);
+            Arrays.fill(end_matches, kNoMatch);
+            for (int state = 0; state < num_states; ++state) {
+                for (int position : states_.get(state)) {
+                    int p = pattern_of_position_[position];
+                    if (position - first_position_[p] != bodies_.get(p).length()) {
+                        continue;
+                    }
+                    long[] matches = anchored_.get(p) ? end_matches : reached_matches;
+                    int i = 2 * state + types_.get(p);
+                    matches[i] = Math.max(matches[i], matches_.get(p));
+                }
+            }
+            Integer dead_state = state_ids_.get(new PositionSet(new int[0]));
+            return new AutomatonRuleIndex(char_classes_, num_classes,
+                    Arrays.copyOf(transitions, num_states * num_classes),
+                    reached_matches, end_matches, dead_state == null ? -1 : dead_state);
+        }
+
+        // Gives each char that is literally in a pattern its own class.
+        private boolean AssignCharClasses() {
+            for (String body : bodies_) {
+                for (int i = 0; i < body.length(); ++i) {
+                    char ch = body.charAt(i);
+                    if (ch >= 0x80) {
+                        return false;
+                    }
+                    if (ch != '*' && char_classes_[ch] == 0) {
+                        class_chars_.add(ch);
+                        char_classes_[ch] = (byte) class_chars_.size();
+                    }
+                }
+            }
+            return true;
+        }
+
+        // Stores in 'next' the positions reached from 'positions' by a char of
+        // 'char_class', and returns how many there are.
+        private int Step(int[] positions, int char_class, int[] next) {
+            int count = 0;
+            for (int position : positions) {
+                int p = pattern_of_position_[position];
+                String body = bodies_.get(p);
+                int j = position - first_position_[p];
+                if (j == body.length()) {
+                    continue;
+                }
+                char ch = body.charAt(j);
+                if (ch == '*') {
+                    // '*' matches the char and stays for the next one.
+                    next[count++] = position;
+                } else if (char_class != 0 && ch == class_chars_.get(char_class - 1)) {
+                    next[count++] = position + 1;
+                }
+            }
+            return count;
+        }
+
+        // Adds the positions right after each '*', as it matches the empty
+        // string, and returns the sorted set.
+        private int[] Closure(int[] positions, int count) {
+            int[] closure = Arrays.copyOf(positions, count);
+            int size = count;
+            for (int i = 0; i < size; ++i) {
+                int position = closure[i];
+                int p = pattern_of_position_[position];
+                String body = bodies_.get(p);
+                int j = position - first_position_[p];
+                if (j < body.length() && body.charAt(j) == '*') {
+                    if (size == closure.length) {
+                        closure = Arrays.copyOf(closure, 2 * size + 1);
+                    }
+                    closure[size++] = position + 1;
+                }
+            }
+            closure = Arrays.copyOf(closure, size);
+            Arrays.sort(closure);
+            int unique = 0;
+            for (int i = 0; i < size; ++i) {
+                if (unique == 0 || closure[unique - 1] != closure[i]) {
+                    closure[unique++] = closure[i];
+                }
+            }
+            return Arrays.copyOf(closure, unique);
+        }
+
+        // Returns the id of the state of 'positions', adding it if new, or null
+        // if that would exceed kMaxStates.
+        private Integer StateOf(int[] positions) {
+            PositionSet key = new PositionSet(positions);
+            Integer id = state_ids_.get(key);
+            if (id == null) {
+                if (states_.size() == kMaxStates) {
+                    return null;
+                }
+                id = states_.size();
+                states_.add(positions);
+                state_ids_.put(key, id);
+            }
+            return id;
+        }
+    }
+
+    private static final class PositionSet {
+        private final int[] positions_;
+        private final int hash_;
+
+        PositionSet(int[] positions) {
+            this.positions_ = positions;
+            this.hash_ = Arrays.hashCode(positions);
+        }
+
+        public boolean equals(Object o) {
+            return o instanceof PositionSet && Arrays.equals(positions_, ((PositionSet) o).positions_);
+        }
+
+        public int hashCode() {
+            return hash_;
+        }
+    }
+}
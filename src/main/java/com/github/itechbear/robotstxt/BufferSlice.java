@@ -0,0 +1,40 @@
+package com.github.itechbear.robotstxt;
+
+import java.nio.ByteBuffer;
+
+// A reusable view of chars stored two bytes each in a range of a ByteBuffer,
+// read with absolute gets only, so that threads can share the buffer.
+// Changing the view allocates nothing.
+final class BufferSlice implements CharSequence {
+    private ByteBuffer buffer_;
+    private int begin_;
+    private int end_;
+
+    // 'begin' and 'end' are byte positions.
+    BufferSlice Reset(ByteBuffer buffer, int begin, int end) {
+        buffer_ = buffer;
+        begin_ = begin;
+        end_ = end;
+        return this;
+    }
+
+    public int length() {
+        return (end_ - begin_) >> 1;
+    }
+
+    public char charAt(int index) {
+        return buffer_.getChar(begin_ + 2 * index);
+    }
+
+    public CharSequence subSequence(int start, int end) {
+        return toString().substring(start, end);
+    }
+
+    public String toString() {
+        StringBuilder s = new StringBuilder(length());
+        for (int i = 0; i < length(); ++i) {
+            s.append(charAt(i));
+        }
+        return s.toString();
+    }
+}
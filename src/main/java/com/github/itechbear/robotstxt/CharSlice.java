@@ -0,0 +1,50 @@
+package com.github.itechbear.robotstxt;
+
+import java.nio.charset.StandardCharsets;
+
+// A reusable view of a range of a CharSequence, or of a byte array whose bytes
+// are read as ISO-8859-1 chars. Changing the view allocates nothing.
+final class CharSlice implements CharSequence {
+    private CharSequence chars_;
+    private byte[] bytes_;
+    private int begin_;
+    private int end_;
+
+    CharSlice Reset(CharSequence chars, int begin, int end) {
+        chars_ = chars;
+        bytes_ = null;
+        begin_ = begin;
+        end_ = end;
+        return this;
+    }
+
+    CharSlice Reset(byte[] bytes, int begin, int end) {
+        chars_ = null;
+        bytes_ = bytes;
+        begin_ = begin;
+        end_ = end;
+        return this;
+    }
+
+    public int length() {
+        return end_ - begin_;
+    }
+
+    public char charAt(int index) {
+        if (bytes_ != null) {
+            return (char) (bytes_[begin_ + index] & 0xFF);
+        }
+        return chars_.charAt(begin_ + index);
+    }
+
+    public CharSequence subSequence(int start, int end) {
+        return toString().substring(start, end);
+    }
+
+    public String toString() {
+        if (bytes_ != null) {
+            return new String(bytes_, begin_, end_ - begin_, StandardCharsets.ISO_8859_1);
+        }
+        return chars_.subSequence(begin_, end_).toString();
+    }
+}
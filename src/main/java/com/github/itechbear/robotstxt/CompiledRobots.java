@@ -0,0 +1,548 @@
+package com.github.itechbear.robotstxt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// A robots.txt body parsed once into its groups of allow/disallow rules, so that
+// many URLs can be checked against it without re-parsing the text. The verdicts
+// are identical to RobotsMatcher.AllowedByRobots() on the same body.
+//
+// Instances are immutable: the rules are only read after construction and the
+// state of a check lives in local variables, so one instance can be shared by
+// any number of threads without locking.
+public final class CompiledRobots {
+    // How the rules of a group are looked up. All engines give the same
+    // verdicts; only LINEAR is used with custom match strategies.
+    public enum Engine {
+        // TRIE for groups with many rules, LINEAR for the others.
+        AUTO,
+        // Tries the rules one by one, like RobotsMatcher.
+        LINEAR,
+        // Walks the path down a trie of the literal prefixes of the patterns.
+        TRIE,
+        // Scans the path once with an automaton of all patterns of the group;
+        // best for many wildcard patterns. Falls back to TRIE for groups whose
+        // automaton would get too big.
+        AUTOMATON,
+    }
+
+    // Rough JVM object layout sizes, used by EstimatedSize().
+    static final int kObjectHeaderSize = 16;
+    static final int kReferenceSize = 8;
+    static final int kStringOverhead = kObjectHeaderSize + 8 + kObjectHeaderSize + 8;
+
+    private static final int[] kNoGroups = new int[0];
+
+    // The rules of a body without groups and sitemaps, such as an empty one,
+    // shared by all of them.
+    static final CompiledRobots kEmpty = new CompiledRobots(new Group[0], new String[0]);
+
+    private final Group[] groups_;
+    // Values of the sitemap lines, in file order.
+    private final String[] sitemaps_;
+    // Indexes of the groups of each user-agent token, by FoldCase() of the
+    // token, and of the groups of the global agent '*'; in file order.
+    private final Map<String, int[]> groups_by_agent_ = new HashMap<>();
+    private final int[] global_groups_;
+    private final long estimated_size_;
+    // What CompiledRobotsBuilder's minimization removed.
+    private final int eliminated_rule_count_;
+    private final int merged_group_count_;
+
+    CompiledRobots(Group[] groups, String[] sitemaps) {
+        this(groups, sitemaps, 0, 0);
+    }
+
+    CompiledRobots(Group[] groups, String[] sitemaps, int eliminated_rule_count, int merged_group_count) {
+        this.groups_ = groups;
+        this.sitemaps_ = sitemaps;
+        this.eliminated_rule_count_ = eliminated_rule_count;
+        this.merged_group_count_ = merged_group_count;
+        int global_count = 0;
+        for (int i = 0; i < groups.length; ++i) {
+            for (String agent : groups[i].agents) {
+                String key = FoldCase(agent);
+                int[] indexes = groups_by_agent_.getOrDefault(key, kNoGroups);
+                // The same token may be repeated in a group.
+                if (indexes.length == 0 || indexes[indexes.length - 1] != i) {
+                    indexes = Arrays.copyOf(indexes, indexes.length + 1);
+                    indexes[indexes.length - 1] = i;
+                    groups_by_agent_.put(key, indexes);
+                }
+            }
+            if (groups[i].global) {
+                ++global_count;
+            }
+        }
+        this.global_groups_ = new int[global_count];
+        for (int i = 0, j = 0; i < groups.length; ++i) {
+            if (groups[i].global) {
+                global_groups_[j++] = i;
+            }
+        }
+        this.estimated_size_ = EstimateSize(groups, sitemaps);
+    }
+
+    public static CompiledRobots Compile(String robots_body) {
+        return Compile(robots_body, new LongestMatchRobotsMatchStrategy());
+    }
+
+    public static CompiledRobots Compile(String robots_body, Engine engine) {
+        CompiledRobotsBuilder builder = new CompiledRobotsBuilder();
+        builder.SetEngine(engine);
+        Util.ParseRobotsTxt(robots_body, builder);
+        return builder.Build();
+    }
+
+    // 'match_strategy' is shared by all checks against the result, so it must
+    // be stateless, as LongestMatchRobotsMatchStrategy is.
+    public static CompiledRobots Compile(String robots_body,
+                                         RobotsMatchStrategy match_strategy) {
+        CompiledRobotsBuilder builder = new CompiledRobotsBuilder(match_strategy);
+        Util.ParseRobotsTxt(robots_body, builder);
+        return builder.Build();
+    }
+
+    // Compiles the UTF-8 encoded 'robots_body', see Util.ParseRobotsTxt(byte[], ...).
+    public static CompiledRobots Compile(byte[] robots_body) {
+        CompiledRobotsBuilder builder = new CompiledRobotsBuilder();
+        Util.ParseRobotsTxt(robots_body, builder);
+        return builder.Build();
+    }
+
+    // Compiles the remaining UTF-8 encoded bytes of 'robots_body'.
+    public static CompiledRobots Compile(ByteBuffer robots_body) {
+        CompiledRobotsBuilder builder = new CompiledRobotsBuilder();
+        Util.ParseRobotsTxt(robots_body, builder);
+        return builder.Build();
+    }
+
+    // Compiles the UTF-8 encoded body read from 'robots_body', up to
+    // Util.kMaxRobotsBytes, see Util.ParseRobotsTxt(InputStream, ...).
+    public static CompiledRobots Compile(InputStream robots_body) throws IOException {
+        CompiledRobotsBuilder builder = new CompiledRobotsBuilder();
+        Util.ParseRobotsTxt(robots_body, builder);
+        return builder.Build();
+    }
+
+    // Returns true iff 'url' is allowed to be fetched by any member of the
+    // "user_agents" vector. 'url' must be %-encoded according to RFC3986.
+    public boolean AllowedByRobots(List<String> user_agents, CharSequence url) {
+        return AllowedByRobots(user_agents, url, RobotsMatchStrategy.ThreadScratch());
+    }
+
+    // Same as above for the UTF-8 encoded 'url' in url[offset, offset + length).
+    public boolean AllowedByRobots(List<String> user_agents, byte[] url, int offset, int length) {
+        RobotsMatchStrategy.Scratch scratch = RobotsMatchStrategy.ThreadScratch();
+        // A %-encoded url is ASCII, so its bytes are its chars.
+        return AllowedByRobots(user_agents, scratch.url_bytes.Reset(url, offset, offset + length), scratch);
+    }
+
+    // Same as above, matching with the caller-owned 'scratch' instead of the
+    // one of the calling thread. The path is matched in place through a view
+    // of 'url' kept in 'scratch', so a check allocates nothing.
+    public boolean AllowedByRobots(List<String> user_agents, CharSequence url,
+                                   RobotsMatchStrategy.Scratch scratch) {
+        boolean[] specific = SpecificGroups(user_agents, scratch);
+        int constant = ConstantVerdict(specific);
+        if (constant != Group.kMixed) {
+            return constant == Group.kAllowAll;
+        }
+        CharSequence path = scratch.path.Reset(url);
+        // Best matches, as in RobotsMatcher's allow_ and disallow_ hierarchies,
+        // packed by RuleIndex.
+        long allow_global = RuleIndex.kNoMatch;
+        long allow_specific = RuleIndex.kNoMatch;
+        long disallow_global = RuleIndex.kNoMatch;
+        long disallow_specific = RuleIndex.kNoMatch;
+        boolean ever_seen_specific_agent = false;
+
+        for (int i = 0; i < groups_.length; ++i) {
+            Group group = groups_[i];
+            if (specific[i]) {
+                ever_seen_specific_agent = true;
+                group.index.Match(path, scratch);
+                allow_specific = Math.max(allow_specific, scratch.allow_match);
+                disallow_specific = Math.max(disallow_specific, scratch.disallow_match);
+            } else if (group.global) {
+                group.index.Match(path, scratch);
+                allow_global = Math.max(allow_global, scratch.allow_match);
+                disallow_global = Math.max(disallow_global, scratch.disallow_match);
+            }
+        }
+
+        return !RobotsMatcher.Disallow(RuleIndex.Priority(allow_global), RuleIndex.Priority(allow_specific),
+                RuleIndex.Priority(disallow_global), RuleIndex.Priority(disallow_specific),
+                ever_seen_specific_agent);
+    }
+
+    // Checks 'url' for each of 'user_agents' on its own, as
+    // OneAgentAllowedByRobots() would, in a single evaluation: every group is
+    // matched against the path at most once, however many of the agents it
+    // applies to.
+    public Verdict[] PerAgentAllowedByRobots(List<String> user_agents, CharSequence url) {
+        RobotsMatchStrategy.Scratch scratch = RobotsMatchStrategy.ThreadScratch();
+        CharSequence path = scratch.path.Reset(url);
+        // Best matches of each group, once matched.
+        long[] allow_matches = new long[groups_.length];
+        long[] disallow_matches = new long[groups_.length];
+        boolean[] matched = new boolean[groups_.length];
+
+        Verdict[] verdicts = new Verdict[user_agents.size()];
+        for (int a = 0; a < verdicts.length; ++a) {
+            int[] specific = groups_by_agent_.getOrDefault(FoldCase(user_agents.get(a)), kNoGroups);
+            long allow_global = RuleIndex.kNoMatch;
+            long allow_specific = RuleIndex.kNoMatch;
+            long disallow_global = RuleIndex.kNoMatch;
+            long disallow_specific = RuleIndex.kNoMatch;
+            for (int i : specific) {
+                MatchGroup(i, path, scratch, allow_matches, disallow_matches, matched);
+                allow_specific = Math.max(allow_specific, allow_matches[i]);
+                disallow_specific = Math.max(disallow_specific, disallow_matches[i]);
+            }
+            // Global groups naming the agent as well count as specific.
+            int next_specific = 0;
+            for (int i : global_groups_) {
+                while (next_specific < specific.length && specific[next_specific] < i) {
+                    ++next_specific;
+                }
+                if (next_specific < specific.length && specific[next_specific] == i) {
+                    continue;
+                }
+                MatchGroup(i, path, scratch, allow_matches, disallow_matches, matched);
+                allow_global = Math.max(allow_global, allow_matches[i]);
+                disallow_global = Math.max(disallow_global, disallow_matches[i]);
+            }
+
+            boolean ever_seen_specific_agent = specific.length > 0;
+            boolean allowed = !RobotsMatcher.Disallow(RuleIndex.Priority(allow_global),
+                    RuleIndex.Priority(allow_specific), RuleIndex.Priority(disallow_global),
+                    RuleIndex.Priority(disallow_specific), ever_seen_specific_agent);
+            // Same as RobotsMatcher.MatchingLine(): ties go to the allow rule.
+            long allow = ever_seen_specific_agent ? allow_specific : allow_global;
+            long disallow = ever_seen_specific_agent ? disallow_specific : disallow_global;
+            int line = RuleIndex.Line(RuleIndex.Priority(disallow) > RuleIndex.Priority(allow) ? disallow : allow);
+            verdicts[a] = new Verdict(user_agents.get(a), allowed, line, ever_seen_specific_agent);
+        }
+        return verdicts;
+    }
+
+    private void MatchGroup(int i, CharSequence path, RobotsMatchStrategy.Scratch scratch,
+                            long[] allow_matches, long[] disallow_matches, boolean[] matched) {
+        if (!matched[i]) {
+            groups_[i].index.Match(path, scratch);
+            allow_matches[i] = scratch.allow_match;
+            disallow_matches[i] = scratch.disallow_match;
+            matched[i] = true;
+        }
+    }
+
+    // Returns which groups name any of 'user_agents', in the first
+    // groups_.length flags of an array of 'scratch'.
+    private boolean[] SpecificGroups(List<String> user_agents, RobotsMatchStrategy.Scratch scratch) {
+        boolean[] specific = scratch.SpecificGroups(groups_.length);
+        for (int a = 0; a < user_agents.size(); ++a) {
+            for (int i : groups_by_agent_.getOrDefault(scratch.FoldedAgent(user_agents.get(a)), kNoGroups)) {
+                specific[i] = true;
+            }
+        }
+        return specific;
+    }
+
+    // Returns Group.kAllowAll or Group.kDisallowAll if all groups deciding for
+    // the agents of 'specific' always give that verdict, else Group.kMixed.
+    // As in RobotsMatcher.Disallow(), only the groups naming the agents decide
+    // if there are any, else only the global groups.
+    private int ConstantVerdict(boolean[] specific) {
+        boolean ever_seen_specific_agent = false;
+        for (int i = 0; i < groups_.length; ++i) {
+            ever_seen_specific_agent |= specific[i];
+        }
+        int verdict = Group.kAllowAll;
+        for (int i = 0; i < groups_.length; ++i) {
+            if (ever_seen_specific_agent ? specific[i] : groups_[i].global) {
+                if (groups_[i].constant_verdict == Group.kMixed) {
+                    return Group.kMixed;
+                }
+                if (groups_[i].constant_verdict == Group.kDisallowAll) {
+                    verdict = Group.kDisallowAll;
+                }
+            }
+        }
+        return verdict;
+    }
+
+    // Maps 'agent' to a key equal for exactly the strings equalsIgnoreCase()
+    // to it, which compares the upper case and then the lower case of each char.
+    static String FoldCase(String agent) {
+        for (int i = 0; i < agent.length(); ++i) {
+            char ch = agent.charAt(i);
+            if (Character.toLowerCase(Character.toUpperCase(ch)) != ch) {
+                char[] folded = agent.toCharArray();
+                for (int j = i; j < folded.length; ++j) {
+                    folded[j] = Character.toLowerCase(Character.toUpperCase(folded[j]));
+                }
+                return new String(folded);
+            }
+        }
+        return agent;
+    }
+
+    // Returns for each of 'urls' whether it is allowed to be fetched by any
+    // member of 'user_agents', as AllowedByRobots(user_agents, url) would. The
+    // groups for 'user_agents', and whether they give a constant verdict, are
+    // looked up once for the whole batch; each path is then matched in place.
+    public boolean[] AllowedByRobots(List<String> user_agents, List<String> urls) {
+        RobotsMatchStrategy.Scratch scratch = RobotsMatchStrategy.ThreadScratch();
+        boolean[] specific = SpecificGroups(user_agents, scratch);
+        boolean[] allowed = new boolean[urls.size()];
+        int constant = ConstantVerdict(specific);
+        if (constant != Group.kMixed) {
+            Arrays.fill(allowed, constant == Group.kAllowAll);
+            return allowed;
+        }
+
+        int specific_count = 0;
+        int global_count = 0;
+        for (int i = 0; i < groups_.length; ++i) {
+            if (specific[i]) {
+                ++specific_count;
+            } else if (groups_[i].global) {
+                ++global_count;
+            }
+        }
+        Group[] specific_groups = new Group[specific_count];
+        Group[] global_groups = new Group[global_count];
+        for (int i = 0, s = 0, g = 0; i < groups_.length; ++i) {
+            if (specific[i]) {
+                specific_groups[s++] = groups_[i];
+            } else if (groups_[i].global) {
+                global_groups[g++] = groups_[i];
+            }
+        }
+        boolean ever_seen_specific_agent = specific_count > 0;
+
+        for (int i = 0; i < allowed.length; ++i) {
+            CharSequence path = scratch.path.Reset(urls.get(i));
+            long allow_global = RuleIndex.kNoMatch;
+            long allow_specific = RuleIndex.kNoMatch;
+            long disallow_global = RuleIndex.kNoMatch;
+            long disallow_specific = RuleIndex.kNoMatch;
+            for (Group group : specific_groups) {
+                group.index.Match(path, scratch);
+                allow_specific = Math.max(allow_specific, scratch.allow_match);
+                disallow_specific = Math.max(disallow_specific, scratch.disallow_match);
+            }
+            for (Group group : global_groups) {
+                group.index.Match(path, scratch);
+                allow_global = Math.max(allow_global, scratch.allow_match);
+                disallow_global = Math.max(disallow_global, scratch.disallow_match);
+            }
+            allowed[i] = !RobotsMatcher.Disallow(RuleIndex.Priority(allow_global),
+                    RuleIndex.Priority(allow_specific), RuleIndex.Priority(disallow_global),
+                    RuleIndex.Priority(disallow_specific), ever_seen_specific_agent);
+        }
+        return allowed;
+    }
+
+    // Do robots check for 'url' when there is only one user agent. 'url' must
+    // be %-encoded according to RFC3986.
+    public boolean OneAgentAllowedByRobots(String user_agent, CharSequence url) {
+        return AllowedByRobots(Collections.singletonList(user_agent), url);
+    }
+
+    // Returns the approximate heap footprint of the rules in bytes, e.g. to
+    // weigh entries of a RobotsCache.
+    public long EstimatedSize() {
+        return estimated_size_;
+    }
+
+    // Number of allow and disallow rules kept.
+    public int RuleCount() {
+        int count = 0;
+        for (Group group : groups_) {
+            count += group.rules.length;
+        }
+        return count;
+    }
+
+    // Number of rules dropped at compile time as duplicate or shadowed, see
+    // CompiledRobotsBuilder; 0 for rules loaded by CompiledRobotsSerializer.
+    public int EliminatedRuleCount() {
+        return eliminated_rule_count_;
+    }
+
+    // Number of groups merged into an earlier group for the same agents.
+    public int MergedGroupCount() {
+        return merged_group_count_;
+    }
+
+    // The sitemap urls listed anywhere in the file.
+    public List<String> Sitemaps() {
+        return Collections.unmodifiableList(Arrays.asList(sitemaps_));
+    }
+
+    Group[] Groups() {
+        return groups_;
+    }
+
+    private static long EstimateSize(Group[] groups, String[] sitemaps) {
+        long size = 5 * kObjectHeaderSize + (long) (groups.length + sitemaps.length) * kReferenceSize;
+        for (String sitemap : sitemaps) {
+            size += kStringOverhead + sitemap.length();
+        }
+        for (Group group : groups) {
+            size += 3 * kObjectHeaderSize + (long) (group.agents.length + group.rules.length) * kReferenceSize
+                    + group.index.EstimatedSize();
+            for (String agent : group.agents) {
+                // The token and its entry in groups_by_agent_.
+                size += 2 * (kStringOverhead + agent.length()) + 2 * kObjectHeaderSize + 4 * kReferenceSize;
+            }
+            for (Rule rule : group.rules) {
+                size += kObjectHeaderSize + 3 * kReferenceSize + EstimateSize(rule.pattern);
+                if (rule.index_alternative != null) {
+                    size += EstimateSize(rule.index_alternative);
+                }
+            }
+        }
+        return size;
+    }
+
+    private static long EstimateSize(RobotsPattern pattern) {
+        // The literal of PREFIX and EXACT patterns is a second string.
+        return kObjectHeaderSize + 3 * kReferenceSize + 2 * (kStringOverhead + pattern.Length());
+    }
+
+    // One or more user-agent lines followed by the rules that apply to them.
+    static final class Group {
+        // User-agent tokens as returned by RobotsMatcher.ExtractUserAgent().
+        final String[] agents;
+        // True if one of the user-agent lines was the global agent '*'.
+        final boolean global;
+        // In file order.
+        final Rule[] rules;
+        final RuleIndex index;
+        // Whether the rules give the same verdict for every path: kAllowAll
+        // if no rule can match with a positive priority, e.g. for no rules or
+        // only an empty "disallow:"; kDisallowAll if a disallow rule matches
+        // every path, e.g. "disallow: /", and no allow rule can match; else
+        // kMixed. Only known for LongestMatchRobotsMatchStrategy.
+        final int constant_verdict;
+
+        static final int kMixed = 0;
+        static final int kAllowAll = 1;
+        static final int kDisallowAll = 2;
+
+        Group(String[] agents, boolean global, Rule[] rules, RobotsMatchStrategy match_strategy,
+              Engine engine) {
+            this.agents = agents;
+            this.global = global;
+            this.rules = rules;
+            this.index = RuleIndex.Create(rules, match_strategy, engine);
+            this.constant_verdict = match_strategy.getClass() == LongestMatchRobotsMatchStrategy.class
+                    ? ConstantVerdict(rules) : kMixed;
+        }
+
+        private static int ConstantVerdict(Rule[] rules) {
+            boolean disallow_all = false;
+            boolean disallow_some = false;
+            for (Rule rule : rules) {
+                String pattern = rule.pattern.Text();
+                if (pattern.isEmpty()) {
+                    // Matches with priority 0, which decides nothing.
+                    continue;
+                }
+                if (rule.type == ParsedRobotsKey.KeyType.ALLOW) {
+                    return kMixed;
+                }
+                if (MatchesEveryPath(pattern)) {
+                    disallow_all = true;
+                } else {
+                    disallow_some = true;
+                }
+            }
+            return disallow_all ? kDisallowAll : disallow_some ? kMixed : kAllowAll;
+        }
+
+        // True for patterns of only '*', optionally after a leading '/': paths
+        // always start with '/'.
+        private static boolean MatchesEveryPath(String pattern) {
+            for (int i = pattern.charAt(0) == '/' ? 1 : 0; i < pattern.length(); ++i) {
+                if (pattern.charAt(i) != '*') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+    // The result of checking a url for one user agent.
+    public static final class Verdict {
+        private final String user_agent_;
+        private final boolean allowed_;
+        private final int matching_line_;
+        private final boolean ever_seen_specific_agent_;
+
+        Verdict(String user_agent, boolean allowed, int matching_line, boolean ever_seen_specific_agent) {
+            this.user_agent_ = user_agent;
+            this.allowed_ = allowed;
+            this.matching_line_ = matching_line;
+            this.ever_seen_specific_agent_ = ever_seen_specific_agent;
+        }
+
+        public String user_agent() {
+            return user_agent_;
+        }
+
+        public boolean allowed() {
+            return allowed_;
+        }
+
+        // The line of the rule that decided the verdict, or 0 if none matched.
+        public int matching_line() {
+            return matching_line_;
+        }
+
+        // True if a group named the agent, so the global group was ignored.
+        public boolean ever_seen_specific_agent() {
+            return ever_seen_specific_agent_;
+        }
+
+        public String toString() {
+            return user_agent_ + ":" + (allowed_ ? "allowed" : "disallowed") + ":" + matching_line_;
+        }
+    }
+
+    static final class Rule {
+        final ParsedRobotsKey.KeyType type;   // ALLOW or DISALLOW.
+        final RobotsPattern pattern;
+        // For allow rules, what RobotsPattern.IndexAlternative() makes of the
+        // pattern, or null.
+        final RobotsPattern index_alternative;
+        final int line;
+
+        Rule(ParsedRobotsKey.KeyType type, String pattern, int line) {
+            this(type, new RobotsPattern(pattern), line);
+        }
+
+        Rule(ParsedRobotsKey.KeyType type, RobotsPattern pattern, int line) {
+            this.type = type;
+            this.pattern = pattern;
+            String index_alternative = type == ParsedRobotsKey.KeyType.ALLOW
+                    ? RobotsPattern.IndexAlternative(pattern.Text()) : null;
+            this.index_alternative = index_alternative != null ? new RobotsPattern(index_alternative) : null;
+            this.line = line;
+        }
+
+        public String toString() {
+            return line + ":" + type + ":" + pattern;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.github.itechbear.robotstxt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Parse callbacks collecting the groups of a robots.txt into a CompiledRobots.
+// Group boundaries follow RobotsMatcher: a user-agent line starts a new group
+// once any other key: value pair has been seen since the previous user-agent.
+// A builder is not thread-safe, but the CompiledRobots it builds are.
+//
+// With LongestMatchRobotsMatchStrategy, the rules are minimized before they
+// are indexed, without changing any verdict or matching line:
+//   - groups for the same set of agents are merged, as checks combine the
+//     best matches of all groups naming an agent anyway;
+//   - of rules with the same type and pattern in a group, only the first is
+//     kept, as ties go to the earliest line;
+//   - disallow rules with the pattern of an allow rule of the group are
+//     dropped, as the allow rule matches wherever they do, with at least the
+//     same priority, and wins ties.
+public class CompiledRobotsBuilder implements RobotsParseSliceHandler {
+    private final RobotsMatchStrategy match_strategy_;
+    private CompiledRobots.Engine engine_ = CompiledRobots.Engine.AUTO;
+    // Null unless SetPatternCacheSize() was called.
+    private PatternCache pattern_cache_;
+
+    // Groups parsed so far, indexed by Build().
+    private final List<PendingGroup> groups_ = new ArrayList<>();
+    // The group being parsed; flushed into groups_ when the next one starts.
+    private boolean in_group_;                  // False before the first user-agent.
+    private final List<String> agents_ = new ArrayList<>();
+    private boolean global_;
+    private final List<CompiledRobots.Rule> rules_ = new ArrayList<>();
+    private boolean seen_separator_;            // True if saw any key: value pair.
+    private final List<String> sitemaps_ = new ArrayList<>();
+
+    public CompiledRobotsBuilder() {
+        this(new LongestMatchRobotsMatchStrategy());
+    }
+
+    public CompiledRobotsBuilder(RobotsMatchStrategy match_strategy) {
+        this.match_strategy_ = match_strategy;
+    }
+
+    // Sets how the rules of the groups are looked up, AUTO by default.
+    public void SetEngine(CompiledRobots.Engine engine) {
+        engine_ = engine;
+    }
+
+    // Keeps the last 'size' or so distinct patterns classified, so that a
+    // builder reused across many bodies shares the RobotsPattern of repeated
+    // rules instead of copying and classifying them again; 0 turns caching
+    // off, the default.
+    public void SetPatternCacheSize(int size) {
+        assert size >= 0;
+        pattern_cache_ = size > 0 ? new PatternCache(size) : null;
+    }
+
+    // Visible for testing.
+    PatternCache GetPatternCache() {
+        return pattern_cache_;
+    }
+
+    // Returns the rules collected by the last parse.
+    public CompiledRobots Build() {
+        FlushGroup();
+        if (groups_.isEmpty() && sitemaps_.isEmpty()) {
+            return CompiledRobots.kEmpty;
+        }
+        List<PendingGroup> groups = groups_;
+        int eliminated_rule_count = 0;
+        if (match_strategy_.getClass() == LongestMatchRobotsMatchStrategy.class) {
+            groups = MergeGroups(groups_);
+            for (PendingGroup group : groups) {
+                eliminated_rule_count += group.rules.size();
+                group.rules = MinimizeRules(group.rules);
+                eliminated_rule_count -= group.rules.size();
+            }
+        }
+        CompiledRobots.Group[] compiled_groups = new CompiledRobots.Group[groups.size()];
+        for (int i = 0; i < compiled_groups.length; ++i) {
+            PendingGroup group = groups.get(i);
+            compiled_groups[i] = new CompiledRobots.Group(group.agents, group.global,
+                    group.rules.toArray(new CompiledRobots.Rule[0]), match_strategy_, engine_);
+        }
+        return new CompiledRobots(compiled_groups, sitemaps_.toArray(new String[0]),
+                eliminated_rule_count, groups_.size() - groups.size());
+    }
+
+    // Returns copies of 'groups' with the groups naming the same agents merged
+    // into the first of them. Rules stay in file order, as later groups only
+    // have later lines.
+    private static List<PendingGroup> MergeGroups(List<PendingGroup> groups) {
+        Map<List<Object>, PendingGroup> by_agents = new HashMap<>();
+        List<PendingGroup> merged = new ArrayList<>();
+        for (PendingGroup group : groups) {
+            List<Object> key = AgentsKey(group);
+            PendingGroup first = by_agents.get(key);
+            if (first == null) {
+                first = new PendingGroup(group.agents, group.global, new ArrayList<>());
+                by_agents.put(key, first);
+                merged.add(first);
+            }
+            first.rules.addAll(group.rules);
+        }
+        return merged;
+    }
+
+    // Equal for groups that apply to exactly the same agents.
+    // Compares the sets themselves, as tokens may be empty, e.g. for
+    // "user-agent: *x", and no joined string tells {*} from {*, ""}.
+    private static List<Object> AgentsKey(PendingGroup group) {
+        Set<String> agents = new HashSet<>();
+        for (String agent : group.agents) {
+            agents.add(CompiledRobots.FoldCase(agent));
+        }
+        return Arrays.asList(group.global, agents);
+    }
+
+    private static List<CompiledRobots.Rule> MinimizeRules(List<CompiledRobots.Rule> rules) {
+        Set<String> allow_patterns = new HashSet<>();
+        for (CompiledRobots.Rule rule : rules) {
+            if (rule.type == ParsedRobotsKey.KeyType.ALLOW) {
+                allow_patterns.add(rule.pattern.Text());
+            }
+        }
+        Set<String> seen_allow = new HashSet<>();
+        Set<String> seen_disallow = new HashSet<>();
+        List<CompiledRobots.Rule> minimized = new ArrayList<>(rules.size());
+        for (CompiledRobots.Rule rule : rules) {
+            String pattern = rule.pattern.Text();
+            boolean keep = rule.type == ParsedRobotsKey.KeyType.ALLOW
+                    ? seen_allow.add(pattern)
+                    : !allow_patterns.contains(pattern) && seen_disallow.add(pattern);
+            if (keep) {
+                minimized.add(rule);
+            }
+        }
+        return minimized.size() == rules.size() ? rules : minimized;
+    }
+
+    public void HandleRobotsStart() {
+        groups_.clear();
+        in_group_ = false;
+        agents_.clear();
+        global_ = false;
+        rules_.clear();
+        seen_separator_ = false;
+        sitemaps_.clear();
+    }
+
+    public void HandleRobotsEnd() {
+    }
+
+    public void HandleUserAgent(int line_num, CharSequence user_agent) {
+        if (!in_group_ || seen_separator_) {
+            FlushGroup();
+            in_group_ = true;
+            seen_separator_ = false;
+        }
+
+        // Google-specific optimization: a '*' followed by space and more characters
+        // in a user-agent record is still regarded a global rule.
+        if (Util.IsGlobalAgent(user_agent)) {
+            global_ = true;
+        } else {
+            agents_.add(RobotsMatcher.ExtractUserAgent(user_agent));
+        }
+    }
+
+    public void HandleAllow(int line_num, CharSequence value) {
+        AddRule(ParsedRobotsKey.KeyType.ALLOW, line_num, value);
+    }
+
+    public void HandleDisallow(int line_num, CharSequence value) {
+        AddRule(ParsedRobotsKey.KeyType.DISALLOW, line_num, value);
+    }
+
+    public void HandleSitemap(int line_num, CharSequence value) {
+        seen_separator_ = true;
+        sitemaps_.add(value.toString());
+    }
+
+    public void HandleUnknownAction(int line_num, CharSequence action, CharSequence value) {
+        seen_separator_ = true;
+    }
+
+    private void AddRule(ParsedRobotsKey.KeyType type, int line_num, CharSequence value) {
+        // Rules outside groups are ignored.
+        if (!in_group_) return;
+        seen_separator_ = true;
+        RobotsPattern pattern = pattern_cache_ != null
+                ? pattern_cache_.Get(value) : new RobotsPattern(value.toString());
+        rules_.add(new CompiledRobots.Rule(type, pattern, line_num));
+    }
+
+    private void FlushGroup() {
+        if (!in_group_) return;
+        groups_.add(new PendingGroup(agents_.toArray(new String[0]), global_, new ArrayList<>(rules_)));
+        in_group_ = false;
+        agents_.clear();
+        global_ = false;
+        rules_.clear();
+    }
+
+    private static final class PendingGroup {
+        final String[] agents;
+        final boolean global;
+        List<CompiledRobots.Rule> rules;
+
+        PendingGroup(String[] agents, boolean global, List<CompiledRobots.Rule> rules) {
+            this.agents = agents;
+            this.global = global;
+            this.rules = rules;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.github.itechbear.robotstxt;
+
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// A compact binary form of CompiledRobots, to persist compiled rules and load
+// them again without parsing the robots.txt bodies. The format is
+//   magic      the bytes "RTXT"
+//   version    kVersion
+//   groups     count, then per group:
+//                flags: 1 if the group is for the global agent '*'
+//                agent tokens: count, then the strings
+//                rules: count, then per rule the line number minus the one
+//                  of the previous rule of the group, shifted left by one
+//                  with the low bit set for allow rules, and the pattern
+//   sitemaps   count, then the strings
+// where counts, flags and numbers are unsigned LEB128 varints and strings a
+// varint byte length and their UTF-8 bytes. Patterns are stored escaped, as
+// matched, so loading only classifies them again.
+//
+// Rules are loaded for LongestMatchRobotsMatchStrategy, whatever strategy they
+// were compiled with.
+public final class CompiledRobotsSerializer {
+    static final byte[] kMagic = {'R', 'T', 'X', 'T'};
+    static final int kVersion = 1;
+
+    private CompiledRobotsSerializer() {
+    }
+
+    public static byte[] Serialize(CompiledRobots robots) {
+        Writer writer = new Writer();
+        writer.bytes_ = Arrays.copyOf(kMagic, 64);
+        writer.size_ = kMagic.length;
+        writer.WriteVarint(kVersion);
+        CompiledRobots.Group[] groups = robots.Groups();
+        writer.WriteVarint(groups.length);
+        for (CompiledRobots.Group group : groups) {
+            writer.WriteVarint(group.global ? 1 : 0);
+            writer.WriteVarint(group.agents.length);
+            for (String agent : group.agents) {
+                writer.WriteString(agent);
+            }
+            writer.WriteVarint(group.rules.length);
+            int previous_line = 0;
+            for (CompiledRobots.Rule rule : group.rules) {
+                int allow = rule.type == ParsedRobotsKey.KeyType.ALLOW ? 1 : 0;
+                writer.WriteVarint(((long) (rule.line - previous_line) << 1) | allow);
+                writer.WriteString(rule.pattern.Text());
+                previous_line = rule.line;
+            }
+        }
+        writer.WriteVarint(robots.Sitemaps().size());
+        for (String sitemap : robots.Sitemaps()) {
+            writer.WriteString(sitemap);
+        }
+        return Arrays.copyOf(writer.bytes_, writer.size_);
+    }
+
+    // Writes the serialized 'robots' at the position of 'out'.
+    public static void Serialize(CompiledRobots robots, ByteBuffer out) {
+        out.put(Serialize(robots));
+    }
+
+    public static CompiledRobots Deserialize(ByteBuffer in) {
+        return Deserialize(in, CompiledRobots.Engine.AUTO);
+    }
+
+    // Reads rules written by Serialize() from the position of 'in', leaving
+    // the position after them. Strings are decoded straight from the array of
+    // heap buffers. Throws IllegalArgumentException if 'in' does not hold
+    // rules of a known version, and BufferUnderflowException if they are cut
+    // short.
+    public static CompiledRobots Deserialize(ByteBuffer in, CompiledRobots.Engine engine) {
+        Reader reader = new Reader(in);
+        for (byte magic : kMagic) {
+            if (in.get() != magic) {
+                throw new IllegalArgumentException("Not serialized robots rules");
+            }
+        }
+        int version = reader.ReadCount();
+        if (version != kVersion) {
+            throw new IllegalArgumentException("Unsupported robots rules version " + version);
+        }
+        RobotsMatchStrategy match_strategy = new LongestMatchRobotsMatchStrategy();
+        CompiledRobots.Group[] groups = new CompiledRobots.Group[reader.ReadElementCount()];
+        for (int i = 0; i < groups.length; ++i) {
+            boolean global = (reader.ReadCount() & 1) != 0;
+            String[] agents = new String[reader.ReadElementCount()];
+            for (int j = 0; j < agents.length; ++j) {
+                agents[j] = reader.ReadString();
+            }
+            CompiledRobots.Rule[] rules = new CompiledRobots.Rule[reader.ReadElementCount()];
+            int line = 0;
+            for (int j = 0; j < rules.length; ++j) {
+                long tag = reader.ReadVarint();
+                line += (int) (tag >>> 1);
+                ParsedRobotsKey.KeyType type = (tag & 1) != 0
+                        ? ParsedRobotsKey.KeyType.ALLOW : ParsedRobotsKey.KeyType.DISALLOW;
+                rules[j] = new CompiledRobots.Rule(type, reader.ReadString(), line);
+            }
+            groups[i] = new CompiledRobots.Group(agents, global, rules, match_strategy, engine);
+        }
+        String[] sitemaps = new String[reader.ReadElementCount()];
+        for (int i = 0; i < sitemaps.length; ++i) {
+            sitemaps[i] = reader.ReadString();
+        }
+        if (groups.length == 0 && sitemaps.length == 0) {
+            return CompiledRobots.kEmpty;
+        }
+        return new CompiledRobots(groups, sitemaps);
+    }
+
+    private static final class Writer {
+        byte[] bytes_;
+        int size_;
+
+        void WriteVarint(long value) {
+            do {
+                byte b = (byte) (value & 0x7F);
+                value >>>= 7;
+                Append(value != 0 ? (byte) (b | 0x80) : b);
+            } while (value != 0);
+        }
+
+        void WriteString(String s) {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            WriteVarint(utf8.length);
+            for (byte b : utf8) {
+                Append(b);
+            }
+        }
+
+        private void Append(byte b) {
+            if (size_ == bytes_.length) {
+                bytes_ = Arrays.copyOf(bytes_, 2 * size_);
+            }
+            bytes_[size_++] = b;
+        }
+    }
+
+    private static final class Reader {
+        private final ByteBuffer in_;
+        // For buffers without an accessible array.
+        private byte[] copy_buffer_;
+
+        Reader(ByteBuffer in) {
+            this.in_ = in;
+        }
+
+        long ReadVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = in_.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        // A count or length, which must fit in the buffer's int range.
+        int ReadCount() {
+            long count = ReadVarint();
+            if (count < 0 || count > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Malformed count " + count);
+            }
+            return (int) count;
+        }
+
+        // A count of elements, each taking at least one of the remaining bytes,
+        // so that corrupt input cannot make arrays of any size allocated.
+        int ReadElementCount() {
+            int count = ReadCount();
+            if (count > in_.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            return count;
+        }
+
+        String ReadString() {
+            int length = ReadCount();
+            if (length > in_.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            String s;
+            if (in_.hasArray()) {
+                s = new String(in_.array(), in_.arrayOffset() + in_.position(), length, StandardCharsets.UTF_8);
+                // Buffer's own position(int), which Java 8 has.
+                ((Buffer) in_).position(in_.position() + length);
+            } else {
+                if (copy_buffer_ == null || copy_buffer_.length < length) {
+                    copy_buffer_ = new byte[Math.max(length, 256)];
+                }
+                in_.get(copy_buffer_, 0, length);
+                s = new String(copy_buffer_, 0, length, StandardCharsets.UTF_8);
+            }
+            return s;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.itechbear.robotstxt;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+// The SHA-256 digest of a robots.txt body, as a map key to share one
+// CompiledRobots among all hosts serving byte-identical files.
+final class ContentDigest {
+    private static final int kChunkSize = 8192;
+    private static final ThreadLocal<Hasher> kHasher = ThreadLocal.withInitial(Hasher::new);
+
+    private final byte[] digest_;
+    private final int hash_code_;
+
+    private ContentDigest(byte[] digest) {
+        this.digest_ = digest;
+        this.hash_code_ = Arrays.hashCode(digest);
+    }
+
+    // Digests the UTF-8 encoding of 'robots_body', as String.getBytes() gives
+    // it, encoded a chunk at a time into a buffer of the thread instead of
+    // copying the whole body.
+    static ContentDigest Of(String robots_body) {
+        Hasher hasher = kHasher.get();
+        CharBuffer in = CharBuffer.wrap(robots_body);
+        ByteBuffer out = hasher.chunk;
+        hasher.encoder.reset();
+        while (true) {
+            CoderResult result = hasher.encoder.encode(in, out, true);
+            if (result.isUnderflow()) {
+                result = hasher.encoder.flush(out);
+            }
+            // Buffer's own flip() and clear(), which Java 8 has.
+            ((Buffer) out).flip();
+            hasher.sha256.update(out);
+            ((Buffer) out).clear();
+            if (result.isUnderflow()) {
+                break;
+            }
+        }
+        return new ContentDigest(hasher.sha256.digest());
+    }
+
+    static ContentDigest Of(byte[] robots_body) {
+        return new ContentDigest(kHasher.get().sha256.digest(robots_body));
+    }
+
+    // Digests the remaining bytes of 'robots_body' without moving its position.
+    static ContentDigest Of(ByteBuffer robots_body) {
+        MessageDigest sha256 = kHasher.get().sha256;
+        sha256.update(robots_body.duplicate());
+        return new ContentDigest(sha256.digest());
+    }
+
+    public boolean equals(Object other) {
+        return other instanceof ContentDigest && Arrays.equals(digest_, ((ContentDigest) other).digest_);
+    }
+
+    public int hashCode() {
+        return hash_code_;
+    }
+
+    private static final class Hasher {
+        final MessageDigest sha256;
+        // Replaces unpaired surrogates with '?', like String.getBytes().
+        final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        final ByteBuffer chunk = ByteBuffer.allocate(kChunkSize);
+
+        Hasher() {
+            try {
+                sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                // Every Java platform implements SHA-256.
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.itechbear.robotstxt;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+// Parses a UTF-8 encoded robots.txt handed over in chunks as they arrive, e.g.
+// from a non-blocking HTTP client: call Feed() for each chunk in order, then
+// Finish(). Callbacks for a line are made as soon as its line end is fed, and
+// only the current line is buffered, so the body never has to be held in
+// memory. Chunks may end anywhere, also inside a CRLF pair, the BOM or a UTF-8
+// sequence; the callbacks are the same as for Util.ParseRobotsTxt() on the
+// whole body.
+//
+// Bytes past 'max_bytes' are ignored, as if the body ended there. Feeding
+// after Finish() starts parsing a new body, so a parser can be reused.
+public final class IncrementalRobotsTxtParser {
+    private static final int kCopyBufferSize = 8192;
+
+    private final RobotsTxtParser parser_;
+    private final long max_bytes_;
+    private long remaining_bytes_;
+    private boolean started_;
+    // For buffers without an accessible array; allocated on first use.
+    private byte[] copy_buffer_;
+
+    public IncrementalRobotsTxtParser(RobotsParseHandler handler) {
+        this(new RobotsParseHandlerAdapter(handler), Util.kMaxRobotsBytes);
+    }
+
+    public IncrementalRobotsTxtParser(RobotsParseSliceHandler handler) {
+        this(handler, Util.kMaxRobotsBytes);
+    }
+
+    public IncrementalRobotsTxtParser(RobotsParseSliceHandler handler, long max_bytes) {
+        assert max_bytes >= 0;
+        this.parser_ = new RobotsTxtParser(handler);
+        this.max_bytes_ = max_bytes;
+    }
+
+    // Parses the remaining bytes of 'chunk', leaving its position at its limit.
+    public void Feed(ByteBuffer chunk) {
+        if (chunk.hasArray()) {
+            Feed(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+            ((Buffer) chunk).position(chunk.limit());
+            return;
+        }
+        if (copy_buffer_ == null) {
+            copy_buffer_ = new byte[kCopyBufferSize];
+        }
+        while (chunk.hasRemaining()) {
+            int length = Math.min(chunk.remaining(), copy_buffer_.length);
+            chunk.get(copy_buffer_, 0, length);
+            Feed(copy_buffer_, 0, length);
+        }
+    }
+
+    public void Feed(byte[] chunk, int offset, int length) {
+        assert offset >= 0 && length >= 0 && offset + length <= chunk.length;
+        if (!started_) {
+            remaining_bytes_ = max_bytes_;
+            parser_.Start();
+            started_ = true;
+        }
+        int fed = (int) Math.min(length, remaining_bytes_);
+        parser_.Feed(chunk, offset, fed);
+        remaining_bytes_ -= fed;
+    }
+
+    // Emits the last line, which needs no line end, and ends the body.
+    public void Finish() {
+        if (!started_) {
+            // An empty body.
+            parser_.Start();
+        }
+        parser_.Finish();
+        started_ = false;
+    }
+
+    // How many more bytes of the current body will be parsed; once 0, the
+    // rest of the body can be left unread.
+    public long RemainingBytes() {
+        return started_ ? remaining_bytes_ : max_bytes_;
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.itechbear.robotstxt;
+
+// Tries the rules one by one with the match strategy, as RobotsMatcher does.
+final class LinearRuleIndex extends RuleIndex {
+    private final CompiledRobots.Rule[] rules_;
+    // Null for LongestMatchRobotsMatchStrategy, whose priorities are the
+    // pattern lengths: its patterns then match the path view directly.
+    // Other strategies get the path as a String.
+    private final RobotsMatchStrategy match_strategy_;
+
+    LinearRuleIndex(CompiledRobots.Rule[] rules, RobotsMatchStrategy match_strategy) {
+        this.rules_ = rules;
+        this.match_strategy_ = match_strategy.getClass() == LongestMatchRobotsMatchStrategy.class
+                ? null : match_strategy;
+    }
+
+    void Match(CharSequence path, RobotsMatchStrategy.Scratch scratch) {
+        long allow = kNoMatch;
+        long disallow = kNoMatch;
+        String path_string = match_strategy_ != null ? path.toString() : null;
+        for (CompiledRobots.Rule rule : rules_) {
+            if (rule.type == ParsedRobotsKey.KeyType.ALLOW) {
+                int priority = MatchAllow(path, path_string, rule.pattern, scratch);
+                if (priority < 0 && rule.index_alternative != null) {
+                    priority = MatchAllow(path, path_string, rule.index_alternative, scratch);
+                }
+                allow = Math.max(allow, Pack(priority, rule.line));
+            } else {
+                int priority = match_strategy_ == null
+                        ? (rule.pattern.Matches(path, scratch) ? rule.pattern.Length() : -1)
+                        : match_strategy_.MatchDisallow(path_string, rule.pattern, scratch);
+                disallow = Math.max(disallow, Pack(priority, rule.line));
+            }
+        }
+        scratch.allow_match = allow;
+        scratch.disallow_match = disallow;
+    }
+
+    private int MatchAllow(CharSequence path, String path_string, RobotsPattern pattern,
+                           RobotsMatchStrategy.Scratch scratch) {
+        if (match_strategy_ == null) {
+            return pattern.Matches(path, scratch) ? pattern.Length() : -1;
+        }
+        return match_strategy_.MatchAllow(path_string, pattern, scratch);
+    }
+
+    long EstimatedSize() {
+        return 2 * CompiledRobots.kObjectHeaderSize + (long) rules_.length * CompiledRobots.kReferenceSize;
+    }
+}
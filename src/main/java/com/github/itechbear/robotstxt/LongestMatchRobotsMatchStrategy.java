@@ -11,4 +11,20 @@ public class LongestMatchRobotsMatchStrategy extends RobotsMatchStrategy {
     public int MatchDisallow(String path, String pattern) {
         return Matches(path, pattern) ? pattern.length() : -1;
     }
+
+    public int MatchAllow(String path, String pattern, Scratch scratch) {
+        return Matches(path, pattern, scratch) ? pattern.length() : -1;
+    }
+
+    public int MatchDisallow(String path, String pattern, Scratch scratch) {
+        return Matches(path, pattern, scratch) ? pattern.length() : -1;
+    }
+
+    public int MatchAllow(String path, RobotsPattern pattern, Scratch scratch) {
+        return pattern.Matches(path, scratch) ? pattern.Length() : -1;
+    }
+
+    public int MatchDisallow(String path, RobotsPattern pattern, Scratch scratch) {
+        return pattern.Matches(path, scratch) ? pattern.Length() : -1;
+    }
 }
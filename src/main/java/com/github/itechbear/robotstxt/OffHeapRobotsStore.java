@@ -0,0 +1,477 @@
+package com.github.itechbear.robotstxt;
+
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Compiled rules of many hosts kept outside the Java heap, so that they put no
+// load on the garbage collector. The rules of each host are one region,
+// appended to large direct buffers, and checks match that region in place;
+// the heap only holds the map from host to region.
+//
+// A region is laid out for checks to read only what they need, with absolute
+// gets at offsets from the region start:
+//   int        number of groups
+//   int        offset of the CompiledRobotsSerializer form of the rules, up
+//              to the end of the region, which only Get() reads
+//   int        number of global groups, and the offset of their indexes
+//   int        number of agent entries, and the offset of the entries: per
+//              agent token of each group, the FoldedHash() of the token, the
+//              index of the group and the offset of the token, sorted by hash
+//   int[]      offset of each group
+// and per group
+//   byte       flags: kGlobalFlag, and the group's constant verdict (see
+//              CompiledRobots.Group) shifted left by one
+//   int        offset of the root of the group's trie
+//   int        number of agent tokens, then each as a char count and chars
+// followed by the nodes of a TrieRuleIndex of the group's rules, each
+//   byte       which best matches follow: bit 0 and 1 for PREFIX allow and
+//              disallow, bit 2 and 3 for EXACT allow and disallow
+//   long[]     those matches, packed by RuleIndex
+//   int        number of WILDCARD patterns ending at the node, then each as
+//              int line, byte type (0 for allow), char count and chars
+//   int        number of children, then their labels as chars, sorted, and
+//              their offsets as ints
+// Numbers are big-endian and chars two bytes each. So a check looks up the
+// groups of its agents by hash, answers from the flags if the groups that
+// decide have a constant verdict, and else walks the path down the tries of
+// those groups only, like CompiledRobots with the TRIE engine.
+//
+// Regions of replaced or removed hosts are not reclaimed (see GarbageBytes()),
+// so a store that sees many updates should be rebuilt now and then. Checks
+// are thread-safe and lock-free, and may run concurrently with updates.
+public final class OffHeapRobotsStore {
+    static final int kGlobalFlag = 1;
+    // Offset of the group offsets in a region.
+    private static final int kGroupTable = 24;
+
+    private static final int kDefaultChunkSize = 64 << 20;
+
+    private final int chunk_size_;
+    // Each region is an int32 length and the serialized rules.
+    private volatile ByteBuffer[] chunks_ = new ByteBuffer[0];
+    // Chunk index and offset of the region of each host, packed into a long.
+    private final ConcurrentHashMap<String, Long> regions_ = new ConcurrentHashMap<>();
+
+    private long capacity_bytes_;
+    private long garbage_bytes_;
+
+    public OffHeapRobotsStore() {
+        this(kDefaultChunkSize);
+    }
+
+    // Regions bigger than 'chunk_size' get a chunk of their own.
+    public OffHeapRobotsStore(int chunk_size) {
+        assert chunk_size > 0;
+        this.chunk_size_ = chunk_size;
+    }
+
+    public void Put(String host, CompiledRobots robots) {
+        Append(host, Region(robots, CompiledRobotsSerializer.Serialize(robots)));
+    }
+
+    // Stores rules as written by CompiledRobotsSerializer.Serialize(). Throws
+    // IllegalArgumentException unless 'serialized_robots' is exactly such
+    // rules of a supported version.
+    public void Put(String host, byte[] serialized_robots) {
+        ByteBuffer in = ByteBuffer.wrap(serialized_robots);
+        CompiledRobots robots;
+        try {
+            robots = CompiledRobotsSerializer.Deserialize(in);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated robots rules", e);
+        }
+        if (in.hasRemaining()) {
+            throw new IllegalArgumentException("Trailing bytes after robots rules");
+        }
+        Append(host, Region(robots, serialized_robots));
+    }
+
+    // Lays out the region of 'robots', see above.
+    private static byte[] Region(CompiledRobots robots, byte[] serialized_robots) {
+        CompiledRobots.Group[] groups = robots.Groups();
+        RegionWriter out = new RegionWriter();
+        out.PutInt(groups.length);
+        out.PutInt(0);
+        out.PutInt(0);
+        out.PutInt(0);
+        out.PutInt(0);
+        out.PutInt(0);
+        for (int i = 0; i < groups.length; ++i) {
+            out.PutInt(0);
+        }
+        // Hash, group and token offset of each agent token.
+        List<long[]> agents = new ArrayList<>();
+        int global_count = 0;
+        for (int i = 0; i < groups.length; ++i) {
+            CompiledRobots.Group group = groups[i];
+            out.PatchInt(kGroupTable + 4 * i, out.Size());
+            out.PutByte((group.global ? kGlobalFlag : 0) | (group.constant_verdict << 1));
+            int root_slot = out.Size();
+            out.PutInt(0);
+            out.PutInt(group.agents.length);
+            for (String agent : group.agents) {
+                agents.add(new long[]{FoldedHash(agent), i, out.Size()});
+                out.PutChars(agent);
+            }
+            out.PatchInt(root_slot, new TrieRuleIndex(group.rules).WriteTo(out));
+            global_count += group.global ? 1 : 0;
+        }
+        out.PatchInt(8, global_count);
+        out.PatchInt(12, out.Size());
+        for (int i = 0; i < groups.length; ++i) {
+            if (groups[i].global) {
+                out.PutInt(i);
+            }
+        }
+        agents.sort((a, b) -> Long.compare(a[0], b[0]));
+        out.PatchInt(16, agents.size());
+        out.PatchInt(20, out.Size());
+        for (long[] agent : agents) {
+            out.PutInt((int) agent[0]);
+            out.PutInt((int) agent[1]);
+            out.PutInt((int) agent[2]);
+        }
+        out.PatchInt(4, out.Size());
+        out.PutBytes(serialized_robots);
+        return out.Bytes();
+    }
+
+    private synchronized void Append(String host, byte[] region_bytes) {
+        int size = 4 + region_bytes.length;
+        ByteBuffer[] chunks = chunks_;
+        ByteBuffer chunk = chunks.length > 0 ? chunks[chunks.length - 1] : null;
+        if (chunk == null || chunk.remaining() < size) {
+            chunk = ByteBuffer.allocateDirect(Math.max(size, chunk_size_));
+            capacity_bytes_ += chunk.capacity();
+            chunks = Arrays.copyOf(chunks, chunks.length + 1);
+            chunks[chunks.length - 1] = chunk;
+            chunks_ = chunks;
+        }
+        long region = ((long) (chunks.length - 1) << 32) | chunk.position();
+        chunk.putInt(region_bytes.length);
+        chunk.put(region_bytes);
+        Long previous = regions_.put(host, region);
+        if (previous != null) {
+            garbage_bytes_ += 4 + RegionLength(previous);
+        }
+    }
+
+    public synchronized void Remove(String host) {
+        Long previous = regions_.remove(host);
+        if (previous != null) {
+            garbage_bytes_ += 4 + RegionLength(previous);
+        }
+    }
+
+    public boolean Contains(String host) {
+        return regions_.containsKey(host);
+    }
+
+    // Returns the rules of 'host' as a heap object, or null.
+    public CompiledRobots Get(String host) {
+        Long region = regions_.get(host);
+        if (region == null) {
+            return null;
+        }
+        ByteBuffer buffer = chunks_[(int) (region >>> 32)];
+        int base = (int) (long) region + 4;
+        ByteBuffer rules = buffer.duplicate();
+        // Buffer's own limit(int) and position(int), which Java 8 has.
+        ((Buffer) rules).limit(base + RegionLength(region)).position(base + buffer.getInt(base + 4));
+        return CompiledRobotsSerializer.Deserialize(rules);
+    }
+
+    public int Size() {
+        return regions_.size();
+    }
+
+    // Off-heap memory allocated so far.
+    public synchronized long CapacityBytes() {
+        return capacity_bytes_;
+    }
+
+    // Off-heap memory of replaced and removed regions.
+    public synchronized long GarbageBytes() {
+        return garbage_bytes_;
+    }
+
+    private int RegionLength(long region) {
+        return chunks_[(int) (region >>> 32)].getInt((int) region);
+    }
+
+    public boolean OneAgentAllowedByRobots(String host, String user_agent, String url) {
+        return AllowedByRobots(host, Collections.singletonList(user_agent), url);
+    }
+
+    // Same as Get(host).AllowedByRobots(user_agents, url), matching the stored
+    // region in place without allocating. Hosts without rules are allowed
+    // everything, as for an empty robots.txt; see Contains().
+    public boolean AllowedByRobots(String host, List<String> user_agents, String url) {
+        Long region = regions_.get(host);
+        if (region == null) {
+            return true;
+        }
+        RobotsMatchStrategy.Scratch scratch = RobotsMatchStrategy.ThreadScratch();
+        ByteBuffer buffer = chunks_[(int) (region >>> 32)];
+        int base = (int) (long) region + 4;
+        int group_count = buffer.getInt(base);
+
+        boolean[] specific = scratch.SpecificGroups(group_count);
+        boolean ever_seen_specific_agent = false;
+        for (int a = 0; a < user_agents.size(); ++a) {
+            ever_seen_specific_agent |= MarkGroupsOfAgent(buffer, base, user_agents.get(a), specific);
+        }
+        // As in RobotsMatcher.Disallow(), only the groups naming one of the
+        // agents decide if there are any, else only the global groups; the
+        // matches of the others would be ignored.
+        int global_count = buffer.getInt(base + 8);
+        int global_groups = base + buffer.getInt(base + 12);
+        int deciding_count = ever_seen_specific_agent ? group_count : global_count;
+        int verdict = CompiledRobots.Group.kAllowAll;
+        for (int i = 0; i < deciding_count && verdict != CompiledRobots.Group.kMixed; ++i) {
+            int group = DecidingGroup(buffer, base, global_groups, specific, ever_seen_specific_agent, i);
+            if (group >= 0) {
+                int constant_verdict = buffer.get(base + buffer.getInt(base + kGroupTable + 4 * group)) >> 1;
+                if (constant_verdict != CompiledRobots.Group.kAllowAll) {
+                    verdict = constant_verdict;
+                }
+            }
+        }
+        if (verdict != CompiledRobots.Group.kMixed) {
+            return verdict == CompiledRobots.Group.kAllowAll;
+        }
+
+        CharSequence path = scratch.path.Reset(url);
+        long allow = RuleIndex.kNoMatch;
+        long disallow = RuleIndex.kNoMatch;
+        for (int i = 0; i < deciding_count; ++i) {
+            int group = DecidingGroup(buffer, base, global_groups, specific, ever_seen_specific_agent, i);
+            if (group >= 0) {
+                MatchTrie(buffer, base, buffer.getInt(base + buffer.getInt(base + kGroupTable + 4 * group) + 1),
+                        path, scratch);
+                allow = Math.max(allow, scratch.allow_match);
+                disallow = Math.max(disallow, scratch.disallow_match);
+            }
+        }
+
+        int allow_priority = RuleIndex.Priority(allow);
+        int disallow_priority = RuleIndex.Priority(disallow);
+        return ever_seen_specific_agent
+                ? !RobotsMatcher.Disallow(RuleIndex.Priority(RuleIndex.kNoMatch), allow_priority,
+                RuleIndex.Priority(RuleIndex.kNoMatch), disallow_priority, true)
+                : !RobotsMatcher.Disallow(allow_priority, RuleIndex.Priority(RuleIndex.kNoMatch),
+                disallow_priority, RuleIndex.Priority(RuleIndex.kNoMatch), false);
+    }
+
+    // The index of the i-th deciding group: of all groups, the i-th if it
+    // names one of the agents, else -1; of the global groups, the i-th.
+    private static int DecidingGroup(ByteBuffer buffer, int base, int global_groups, boolean[] specific,
+                                     boolean ever_seen_specific_agent, int i) {
+        if (ever_seen_specific_agent) {
+            return specific[i] ? i : -1;
+        }
+        return buffer.getInt(global_groups + 4 * i);
+    }
+
+    // Sets the flags in 'specific' of the groups naming 'user_agent', compared
+    // like String.equalsIgnoreCase(), and returns true if there are any.
+    private static boolean MarkGroupsOfAgent(ByteBuffer buffer, int base, String user_agent, boolean[] specific) {
+        int hash = FoldedHash(user_agent);
+        int entries = base + buffer.getInt(base + 20);
+        // The first entry of 'hash', if any.
+        int low = 0;
+        int high = buffer.getInt(base + 16);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (buffer.getInt(entries + 12 * middle) < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        boolean found = false;
+        int entry_count = buffer.getInt(base + 16);
+        for (int e = low; e < entry_count && buffer.getInt(entries + 12 * e) == hash; ++e) {
+            int token = base + buffer.getInt(entries + 12 * e + 8);
+            int length = buffer.getInt(token);
+            if (length != user_agent.length()) {
+                continue;
+            }
+            int i = 0;
+            while (i < length && FoldCase(user_agent.charAt(i)) == FoldCase(buffer.getChar(token + 4 + 2 * i))) {
+                ++i;
+            }
+            if (i == length) {
+                specific[buffer.getInt(entries + 12 * e + 4)] = true;
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    // A hash equal for strings equalsIgnoreCase() to each other.
+    static int FoldedHash(CharSequence s) {
+        int hash = 0;
+        for (int i = 0; i < s.length(); ++i) {
+            hash = 31 * hash + FoldCase(s.charAt(i));
+        }
+        return hash;
+    }
+
+    private static char FoldCase(char ch) {
+        return Character.toLowerCase(Character.toUpperCase(ch));
+    }
+
+    // Same as TrieRuleIndex.Match() on the trie whose root is at offset 'node'
+    // of the region at 'base'.
+    private static void MatchTrie(ByteBuffer buffer, int base, int node, CharSequence path,
+                                  RobotsMatchStrategy.Scratch scratch) {
+        BufferSlice pattern = scratch.stored_pattern;
+        long allow = RuleIndex.kNoMatch;
+        long disallow = RuleIndex.kNoMatch;
+        int depth = 0;
+        while (true) {
+            int pos = base + node;
+            int mask = buffer.get(pos++);
+            if ((mask & 1) != 0) {
+                allow = Math.max(allow, buffer.getLong(pos));
+                pos += 8;
+            }
+            if ((mask & 2) != 0) {
+                disallow = Math.max(disallow, buffer.getLong(pos));
+                pos += 8;
+            }
+            long exact_allow = RuleIndex.kNoMatch;
+            long exact_disallow = RuleIndex.kNoMatch;
+            if ((mask & 4) != 0) {
+                exact_allow = buffer.getLong(pos);
+                pos += 8;
+            }
+            if ((mask & 8) != 0) {
+                exact_disallow = buffer.getLong(pos);
+                pos += 8;
+            }
+            int wildcard_count = buffer.getInt(pos);
+            pos += 4;
+            for (int i = 0; i < wildcard_count; ++i) {
+                int line = buffer.getInt(pos);
+                boolean is_allow = buffer.get(pos + 4) == 0;
+                int length = buffer.getInt(pos + 5);
+                pos += 9;
+                pattern.Reset(buffer, pos, pos + 2 * length);
+                pos += 2 * length;
+                boolean anchored = length > 0 && pattern.charAt(length - 1) == '$';
+                if (RobotsMatchStrategy.Matches(path, pattern, anchored ? length - 1 : length, anchored, scratch)) {
+                    long match = RuleIndex.Pack(length, line);
+                    if (is_allow) {
+                        allow = Math.max(allow, match);
+                    } else {
+                        disallow = Math.max(disallow, match);
+                    }
+                }
+            }
+            if (depth == path.length()) {
+                allow = Math.max(allow, exact_allow);
+                disallow = Math.max(disallow, exact_disallow);
+                break;
+            }
+            node = FindChild(buffer, pos, path.charAt(depth++));
+            if (node < 0) {
+                break;
+            }
+        }
+        scratch.allow_match = allow;
+        scratch.disallow_match = disallow;
+    }
+
+    // Returns the offset of the child labeled 'label' of the node whose
+    // children start at 'pos', or -1.
+    private static int FindChild(ByteBuffer buffer, int pos, char label) {
+        int child_count = buffer.getInt(pos);
+        int labels = pos + 4;
+        int low = 0;
+        int high = child_count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char middle_label = buffer.getChar(labels + 2 * middle);
+            if (middle_label < label) {
+                low = middle + 1;
+            } else if (middle_label > label) {
+                high = middle - 1;
+            } else {
+                return buffer.getInt(labels + 2 * child_count + 4 * middle);
+            }
+        }
+        return -1;
+    }
+
+    // Builds a region in a growing array.
+    static final class RegionWriter {
+        private byte[] bytes_ = new byte[256];
+        private int size_;
+
+        int Size() {
+            return size_;
+        }
+
+        void PutByte(int value) {
+            Reserve(1);
+            bytes_[size_++] = (byte) value;
+        }
+
+        void PutChar(char value) {
+            Reserve(2);
+            bytes_[size_++] = (byte) (value >>> 8);
+            bytes_[size_++] = (byte) value;
+        }
+
+        void PutInt(int value) {
+            Reserve(4);
+            PatchInt(size_, value);
+            size_ += 4;
+        }
+
+        void PutLong(long value) {
+            PutInt((int) (value >>> 32));
+            PutInt((int) value);
+        }
+
+        // A char count and the chars.
+        void PutChars(String s) {
+            PutInt(s.length());
+            for (int i = 0; i < s.length(); ++i) {
+                PutChar(s.charAt(i));
+            }
+        }
+
+        void PutBytes(byte[] bytes) {
+            Reserve(bytes.length);
+            System.arraycopy(bytes, 0, bytes_, size_, bytes.length);
+            size_ += bytes.length;
+        }
+
+        // Overwrites the int at 'pos', already written.
+        void PatchInt(int pos, int value) {
+            bytes_[pos] = (byte) (value >>> 24);
+            bytes_[pos + 1] = (byte) (value >>> 16);
+            bytes_[pos + 2] = (byte) (value >>> 8);
+            bytes_[pos + 3] = (byte) value;
+        }
+
+        byte[] Bytes() {
+            return Arrays.copyOf(bytes_, size_);
+        }
+
+        private void Reserve(int n) {
+            if (bytes_.length - size_ < n) {
+                bytes_ = Arrays.copyOf(bytes_, Math.max(2 * bytes_.length, size_ + n));
+            }
+        }
+    }
+}
@@ -12,46 +12,52 @@ public class ParsedRobotsKey {
         type_ = KeyType.UNKNOWN;
     }
 
-    private static boolean KeyIsUserAgent(String key) {
-        return Util.StartsWithIgnoreCase(key, "user-agent")
-                || (kAllowFrequentTypos && (Util.StartsWithIgnoreCase(key, "useragent") || Util.StartsWithIgnoreCase(key, "user agent")));
+    private static boolean KeyIsUserAgent(CharSequence key, int begin, int end) {
+        return Util.StartsWithIgnoreCase(key, begin, end, "user-agent")
+                || (kAllowFrequentTypos && (Util.StartsWithIgnoreCase(key, begin, end, "useragent") || Util.StartsWithIgnoreCase(key, begin, end, "user agent")));
     }
 
-    private static boolean KeyIsAllow(String key) {
-        return Util.StartsWithIgnoreCase(key, "allow");
+    private static boolean KeyIsAllow(CharSequence key, int begin, int end) {
+        return Util.StartsWithIgnoreCase(key, begin, end, "allow");
     }
 
-    private static boolean KeyIsDisallow(String key) {
+    private static boolean KeyIsDisallow(CharSequence key, int begin, int end) {
         return (
-                Util.StartsWithIgnoreCase(key, "disallow") ||
-                        (kAllowFrequentTypos && ((Util.StartsWithIgnoreCase(key, "dissallow")) ||
-                                (Util.StartsWithIgnoreCase(key, "dissalow")) ||
-                                (Util.StartsWithIgnoreCase(key, "disalow")) ||
-                                (Util.StartsWithIgnoreCase(key, "diasllow")) ||
-                                (Util.StartsWithIgnoreCase(key, "disallaw")))));
+                Util.StartsWithIgnoreCase(key, begin, end, "disallow") ||
+                        (kAllowFrequentTypos && ((Util.StartsWithIgnoreCase(key, begin, end, "dissallow")) ||
+                                (Util.StartsWithIgnoreCase(key, begin, end, "dissalow")) ||
+                                (Util.StartsWithIgnoreCase(key, begin, end, "disalow")) ||
+                                (Util.StartsWithIgnoreCase(key, begin, end, "diasllow")) ||
+                                (Util.StartsWithIgnoreCase(key, begin, end, "disallaw")))));
 
     }
 
-    private static boolean KeyIsSitemap(String key) {
-        return ((Util.StartsWithIgnoreCase(key, "sitemap")) ||
-                (Util.StartsWithIgnoreCase(key, "site-map")));
+    private static boolean KeyIsSitemap(CharSequence key, int begin, int end) {
+        return ((Util.StartsWithIgnoreCase(key, begin, end, "sitemap")) ||
+                (Util.StartsWithIgnoreCase(key, begin, end, "site-map")));
     }
 
     public void Parse(String key) {
-        if (KeyIsUserAgent(key)) {
-            type_ = KeyType.USER_AGENT;
-        } else if (KeyIsAllow(key)) {
-            type_ = KeyType.ALLOW;
-        } else if (KeyIsDisallow(key)) {
-            type_ = KeyType.DISALLOW;
-        } else if (KeyIsSitemap(key)) {
-            type_ = KeyType.SITEMAP;
-        } else {
-            type_ = KeyType.UNKNOWN;
+        type_ = ParseType(key, 0, key.length());
+        if (type_ == KeyType.UNKNOWN) {
             key_text_ = key;
         }
     }
 
+    // Classifies the key in key[begin, end) without copying it.
+    static KeyType ParseType(CharSequence key, int begin, int end) {
+        if (KeyIsUserAgent(key, begin, end)) {
+            return KeyType.USER_AGENT;
+        } else if (KeyIsAllow(key, begin, end)) {
+            return KeyType.ALLOW;
+        } else if (KeyIsDisallow(key, begin, end)) {
+            return KeyType.DISALLOW;
+        } else if (KeyIsSitemap(key, begin, end)) {
+            return KeyType.SITEMAP;
+        }
+        return KeyType.UNKNOWN;
+    }
+
     // Returns the type of key.
     public KeyType Type() {
         return type_;
@@ -0,0 +1,44 @@
+package com.github.itechbear.robotstxt;
+
+// A reusable view of the path, params and query of a URL, equal to the String
+// Util.GetPathParamsQuery() returns but read straight from the URL, including
+// the '/' implied when the URL's path does not start with one. Changing the
+// view allocates nothing.
+final class PathView implements CharSequence {
+    private CharSequence url_;
+    private int begin_;
+    private int end_;
+    private boolean leading_slash_;
+
+    PathView Reset(CharSequence url) {
+        return Reset(url, Util.FindPathParamsQuery(url));
+    }
+
+    // 'range' is the result of Util.FindPathParamsQuery(url).
+    PathView Reset(CharSequence url, long range) {
+        url_ = url;
+        begin_ = Util.PathBegin(range);
+        end_ = Util.PathEnd(range);
+        leading_slash_ = Util.PathNeedsLeadingSlash(url, range);
+        return this;
+    }
+
+    public int length() {
+        return end_ - begin_ + (leading_slash_ ? 1 : 0);
+    }
+
+    public char charAt(int index) {
+        if (leading_slash_) {
+            return index == 0 ? '/' : url_.charAt(begin_ + index - 1);
+        }
+        return url_.charAt(begin_ + index);
+    }
+
+    public CharSequence subSequence(int start, int end) {
+        return toString().substring(start, end);
+    }
+
+    public String toString() {
+        return new StringBuilder(length()).append(this).toString();
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.itechbear.robotstxt;
+
+// A small direct-mapped cache of classified patterns, for compiling many
+// robots.txt bodies that repeat the same rules (e.g. "/", "/search" or the
+// defaults of a CMS). A hit costs one hash and one compare over the chars of
+// the parsed value, without turning it into a String, and the compiled rules
+// share the RobotsPattern. A slot keeps the last pattern hashed to it.
+// Not thread-safe; RobotsPatterns are immutable, so rules sharing them are.
+final class PatternCache {
+    private final RobotsPattern[] slots_;
+    private final int mask_;
+    private long hit_count_;
+    private long miss_count_;
+
+    // 'size' is rounded up to a power of two.
+    PatternCache(int size) {
+        assert size > 0 && size <= 1 << 30;
+        int capacity = Integer.highestOneBit(size);
+        if (capacity < size) {
+            capacity <<= 1;
+        }
+        this.slots_ = new RobotsPattern[capacity];
+        this.mask_ = capacity - 1;
+    }
+
+    // Returns the pattern for 'text', the cached one if 'text' was seen last
+    // in its slot.
+    RobotsPattern Get(CharSequence text) {
+        int length = text.length();
+        int hash = length;
+        for (int i = 0; i < length; ++i) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        int slot = (hash ^ (hash >>> 16)) & mask_;
+        RobotsPattern cached = slots_[slot];
+        if (cached != null && ContentEquals(cached.Text(), text)) {
+            ++hit_count_;
+            return cached;
+        }
+        ++miss_count_;
+        RobotsPattern pattern = new RobotsPattern(text.toString());
+        slots_[slot] = pattern;
+        return pattern;
+    }
+
+    long HitCount() {
+        return hit_count_;
+    }
+
+    long MissCount() {
+        return miss_count_;
+    }
+
+    private static boolean ContentEquals(String s, CharSequence text) {
+        int length = s.length();
+        if (length != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; ++i) {
+            if (s.charAt(i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,364 @@
+package com.github.itechbear.robotstxt;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Compiles a dump of many robots.txt bodies in parallel on a fork-join pool,
+// into one CompiledRobots per host. A dump is either
+//   - a directory with one file per host, named after the host, optionally
+//     with a ".txt" suffix, or
+//   - an archive file of entries, each a big-endian int32 length and the UTF-8
+//     host, then an int32 length and the body, see AppendArchiveEntry().
+// Files above kMapThreshold are memory-mapped and parsed from the mapping, so
+// a big body is never copied onto the heap; smaller ones are read into a
+// buffer of the worker, as mappings are only released on GC and a dump of
+// millions of small files would run out of them. As by Google, only the
+// first Util.kMaxRobotsBytes of a body are parsed. Entries are independent, so throughput scales with the
+// parallelism of the pool.
+//
+// Bodies are keyed by their SHA-256 digest, and hosts serving byte-identical
+// files share one CompiledRobots that is compiled once.
+//
+// Usage: java com.github.itechbear.robotstxt.RobotsBulkCompiler <dir|archive> [threads]
+public final class RobotsBulkCompiler {
+    // Entries per fork-join task.
+    private static final int kEntriesPerTask = 64;
+    // Archives are mapped in windows of at most this size, each holding whole
+    // entries, so that archives above 2 GiB work as well.
+    private static final int kArchiveWindowSize = 1 << 28;
+    // Patterns each worker keeps classified; bodies of a crawl repeat the
+    // same rules a lot.
+    private static final int kPatternCacheSize = 1024;
+    // Files up to this size are read rather than mapped.
+    private static final int kMapThreshold = 64 << 10;
+
+    private final ForkJoinPool pool_;
+    private final CompiledRobots.Engine engine_;
+    private final int archive_window_size_;
+
+    // A parser and builder per worker thread, reused for all its entries.
+    private final ThreadLocal<IncrementalRobotsTxtParser> parser_;
+    private final ThreadLocal<CompiledRobotsBuilder> builder_;
+    // Holds the small files read by a worker.
+    private final ThreadLocal<ByteBuffer> read_buffer_ =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(kMapThreshold));
+
+    public RobotsBulkCompiler(ForkJoinPool pool) {
+        this(pool, CompiledRobots.Engine.AUTO);
+    }
+
+    public RobotsBulkCompiler(ForkJoinPool pool, CompiledRobots.Engine engine) {
+        this(pool, engine, kArchiveWindowSize);
+    }
+
+    // Visible for testing.
+    RobotsBulkCompiler(ForkJoinPool pool, CompiledRobots.Engine engine, int archive_window_size) {
+        this.pool_ = pool;
+        this.engine_ = engine;
+        this.archive_window_size_ = archive_window_size;
+        this.builder_ = ThreadLocal.withInitial(() -> {
+            CompiledRobotsBuilder builder = new CompiledRobotsBuilder();
+            builder.SetEngine(engine_);
+            builder.SetPatternCacheSize(kPatternCacheSize);
+            return builder;
+        });
+        this.parser_ = ThreadLocal.withInitial(() -> new IncrementalRobotsTxtParser(builder_.get()));
+    }
+
+    // The compiled rules by host, and how the compilation went. Of several
+    // entries for a host, the last one compiled wins.
+    public static final class Result {
+        private final Map<String, CompiledRobots> robots_ = new ConcurrentHashMap<>();
+        private final Map<ContentDigest, CompiledRobots> by_digest_ = new ConcurrentHashMap<>();
+        private final Queue<String> failed_hosts_ = new ConcurrentLinkedQueue<>();
+        private final AtomicLong file_count_ = new AtomicLong();
+        private final AtomicLong bytes_ = new AtomicLong();
+        private long elapsed_nanos_;
+
+        public Map<String, CompiledRobots> Robots() {
+            return robots_;
+        }
+
+        // Hosts whose body could not be read.
+        public Queue<String> FailedHosts() {
+            return failed_hosts_;
+        }
+
+        public long FileCount() {
+            return file_count_.get();
+        }
+
+        public long FailureCount() {
+            return failed_hosts_.size();
+        }
+
+        // Number of distinct bodies compiled; the other hosts share their rules.
+        public long DistinctBodyCount() {
+            return by_digest_.size();
+        }
+
+        // Size of the bodies parsed, at most Util.kMaxRobotsBytes each.
+        public long ByteCount() {
+            return bytes_.get();
+        }
+
+        public long ElapsedNanos() {
+            return elapsed_nanos_;
+        }
+
+        public double FilesPerSecond() {
+            return elapsed_nanos_ == 0 ? 0 : FileCount() * 1e9 / elapsed_nanos_;
+        }
+
+        public String toString() {
+            return String.format("%d files (%d failed, %d distinct), %d bytes in %.3f s: %.0f files/s",
+                    FileCount(), FailureCount(), DistinctBodyCount(), ByteCount(), elapsed_nanos_ / 1e9,
+                    FilesPerSecond());
+        }
+    }
+
+    // A body to compile: a file to map, or a range of a mapped archive window.
+    private static final class Entry {
+        final String host;
+        final Path file;
+        final ByteBuffer window;
+        final int offset;
+        final int length;
+
+        Entry(String host, Path file, ByteBuffer window, int offset, int length) {
+            this.host = host;
+            this.file = file;
+            this.window = window;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    public Result CompileDirectory(Path directory) throws IOException {
+        long start = System.nanoTime();
+        List<Entry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                if (Files.isRegularFile(file)) {
+                    String host = file.getFileName().toString();
+                    if (host.endsWith(".txt")) {
+                        host = host.substring(0, host.length() - ".txt".length());
+                    }
+                    entries.add(new Entry(host, file, null, 0, 0));
+                }
+            }
+        }
+        return Compile(entries, start);
+    }
+
+    public Result CompileArchive(Path archive) throws IOException {
+        long start = System.nanoTime();
+        List<Entry> entries = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long window_start = 0;
+            while (window_start < size) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, window_start,
+                        Math.min(archive_window_size_, size - window_start));
+                int pos = 0;
+                while (pos < window.limit()) {
+                    long entry_size = EntrySize(window, pos);
+                    if (entry_size < 0 || pos + entry_size > window.limit()) {
+                        break;
+                    }
+                    entries.add(ArchiveEntry(window, pos));
+                    pos += (int) entry_size;
+                }
+                if (pos == 0) {
+                    // The next entry is bigger than a window: map exactly it.
+                    long entry_size = EntrySize(channel, window_start, size);
+                    if (window.limit() == size - window_start || entry_size > Integer.MAX_VALUE) {
+                        throw new IOException("Truncated or corrupt archive entry at " + window_start);
+                    }
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, window_start, entry_size);
+                    entries.add(ArchiveEntry(window, 0));
+                    pos = (int) entry_size;
+                }
+                window_start += pos;
+            }
+        }
+        return Compile(entries, start);
+    }
+
+    // Returns the entry at 'pos' of 'window', which must hold all of it.
+    private static Entry ArchiveEntry(ByteBuffer window, int pos) {
+        int host_length = window.getInt(pos);
+        byte[] host = new byte[host_length];
+        ByteBuffer host_view = window.duplicate();
+        // Buffer's own position(int), which Java 8 has.
+        ((Buffer) host_view).position(pos + 4);
+        host_view.get(host);
+        return new Entry(new String(host, StandardCharsets.UTF_8), null, window,
+                pos + 8 + host_length, window.getInt(pos + 4 + host_length));
+    }
+
+    // Appends an entry for CompileArchive() to 'out'.
+    public static void AppendArchiveEntry(OutputStream out, String host, byte[] robots_body) throws IOException {
+        byte[] host_bytes = host.getBytes(StandardCharsets.UTF_8);
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(host_bytes.length);
+        data.write(host_bytes);
+        data.writeInt(robots_body.length);
+        data.write(robots_body);
+        data.flush();
+    }
+
+    // Returns the size of the entry at 'pos' of 'window', or -1 if its header
+    // does not fit in the window.
+    private static long EntrySize(ByteBuffer window, int pos) throws IOException {
+        if (window.limit() - pos < 4) {
+            return -1;
+        }
+        int host_length = window.getInt(pos);
+        if (host_length < 0) {
+            throw new IOException("Corrupt archive entry");
+        }
+        if ((long) window.limit() - pos < 8L + host_length) {
+            return -1;
+        }
+        int body_length = window.getInt(pos + 4 + host_length);
+        if (body_length < 0) {
+            throw new IOException("Corrupt archive entry");
+        }
+        return 8L + host_length + body_length;
+    }
+
+    // Same as above for the entry at 'pos' of the file, read without mapping.
+    private static long EntrySize(FileChannel channel, long pos, long size) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        if (channel.read(header, pos) != 4) {
+            throw new IOException("Truncated archive entry at " + pos);
+        }
+        int host_length = header.getInt(0);
+        ((Buffer) header).clear();
+        if (host_length < 0 || channel.read(header, pos + 4 + host_length) != 4 || header.getInt(0) < 0) {
+            throw new IOException("Corrupt archive entry at " + pos);
+        }
+        long entry_size = 8L + host_length + header.getInt(0);
+        if (pos + entry_size > size) {
+            throw new IOException("Truncated archive entry at " + pos);
+        }
+        return entry_size;
+    }
+
+    private Result Compile(List<Entry> entries, long start) {
+        Result result = new Result();
+        pool_.invoke(new CompileTask(entries.toArray(new Entry[0]), 0, entries.size(), result));
+        result.elapsed_nanos_ = System.nanoTime() - start;
+        return result;
+    }
+
+    private final class CompileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Entry[] entries_;
+        private final int begin_;
+        private final int end_;
+        private final Result result_;
+
+        CompileTask(Entry[] entries, int begin, int end, Result result) {
+            this.entries_ = entries;
+            this.begin_ = begin;
+            this.end_ = end;
+            this.result_ = result;
+        }
+
+        protected void compute() {
+            if (end_ - begin_ > kEntriesPerTask) {
+                int middle = (begin_ + end_) >>> 1;
+                invokeAll(new CompileTask(entries_, begin_, middle, result_),
+                        new CompileTask(entries_, middle, end_, result_));
+                return;
+            }
+            for (int i = begin_; i < end_; ++i) {
+                Entry entry = entries_[i];
+                result_.file_count_.incrementAndGet();
+                try {
+                    ByteBuffer body = Map(entry);
+                    result_.bytes_.addAndGet(body.remaining());
+                    ContentDigest digest = ContentDigest.Of(body);
+                    CompiledRobots robots = result_.by_digest_.get(digest);
+                    if (robots == null) {
+                        // Concurrent tasks may compile the same body; the
+                        // first result is kept.
+                        robots = Compile(body);
+                        CompiledRobots previous = result_.by_digest_.putIfAbsent(digest, robots);
+                        robots = previous != null ? previous : robots;
+                    }
+                    result_.robots_.put(entry.host, robots);
+                } catch (IOException e) {
+                    result_.failed_hosts_.add(entry.host);
+                }
+            }
+        }
+    }
+
+    // Returns the body of 'entry', valid until the next call on this thread.
+    private ByteBuffer Map(Entry entry) throws IOException {
+        if (entry.file == null) {
+            ByteBuffer body = entry.window.duplicate();
+            ((Buffer) body).limit(entry.offset + Math.min(entry.length, Util.kMaxRobotsBytes)).position(entry.offset);
+            return body;
+        }
+        try (FileChannel channel = FileChannel.open(entry.file, StandardOpenOption.READ)) {
+            long size = Math.min(channel.size(), Util.kMaxRobotsBytes);
+            if (size > kMapThreshold) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            ByteBuffer body = read_buffer_.get();
+            ((Buffer) body).clear().limit((int) size);
+            // The file may have shrunk since; a grown one is cut at 'size'.
+            while (body.hasRemaining()) {
+                if (channel.read(body) < 0) {
+                    break;
+                }
+            }
+            ((Buffer) body).flip();
+            return body;
+        }
+    }
+
+    private CompiledRobots Compile(ByteBuffer body) {
+        IncrementalRobotsTxtParser parser = parser_.get();
+        parser.Feed(body);
+        parser.Finish();
+        return builder_.get().Build();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: RobotsBulkCompiler <directory|archive> [threads]");
+            System.exit(1);
+        }
+        Path dump = Paths.get(args[0]);
+        ForkJoinPool pool = args.length > 1 ? new ForkJoinPool(Integer.parseInt(args[1])) : ForkJoinPool.commonPool();
+        RobotsBulkCompiler compiler = new RobotsBulkCompiler(pool);
+        Result result = Files.isDirectory(dump) ? compiler.CompileDirectory(dump) : compiler.CompileArchive(dump);
+        System.out.println(result);
+    }
+}
@@ -0,0 +1,268 @@
+package com.github.itechbear.robotstxt;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+// A host-keyed cache of CompiledRobots. Entries expire 'ttl' after they were
+// stored, so robots.txt files get refetched periodically, and the least
+// recently used entries are evicted once the summed EstimatedSize() of all
+// entries exceeds 'max_weight'. All methods are thread-safe.
+//
+// Many hosts serve byte-identical files (parked domains, CMS defaults,
+// subdomains of one site), so bodies are keyed by their SHA-256 digest and
+// hosts with the same body share one CompiledRobots, which is compiled and
+// weighed once. Shared rules are reference counted by the hosts using them
+// and dropped with the last one. Evicting a host whose rules other hosts
+// still use frees nothing, so eviction first skips such hosts and only
+// falls back to plain LRU order if that does not get below 'max_weight',
+// e.g. when one shared body alone weighs more.
+public class RobotsCache {
+    // Google refreshes robots.txt files about once a day.
+    public static final long kDefaultTtlMillis = TimeUnit.DAYS.toMillis(1);
+
+    private final long max_weight_;
+    private final long ttl_nanos_;
+    private final LongSupplier clock_;
+
+    // Access-ordered, so iteration starts at the least recently used entry.
+    private final LinkedHashMap<String, Entry> entries_ = new LinkedHashMap<>(16, 0.75f, true);
+    // The rules of bodies stored by Put(host, robots_body), by digest.
+    private final HashMap<ContentDigest, Shared> shared_ = new HashMap<>();
+    private long weight_;
+
+    private long hit_count_;
+    private long miss_count_;
+    private long eviction_count_;
+    private long expiration_count_;
+    private long shared_put_count_;
+
+    public RobotsCache(long max_weight) {
+        this(max_weight, kDefaultTtlMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public RobotsCache(long max_weight, long ttl, TimeUnit unit) {
+        this(max_weight, unit.toNanos(ttl), System::nanoTime);
+    }
+
+    // Visible for testing: 'clock' returns the current time in nanoseconds.
+    RobotsCache(long max_weight, long ttl_nanos, LongSupplier clock) {
+        assert max_weight >= 0 && ttl_nanos >= 0;
+        this.max_weight_ = max_weight;
+        this.ttl_nanos_ = ttl_nanos;
+        this.clock_ = clock;
+    }
+
+    // Returns the unexpired rules stored for 'host', or null.
+    public synchronized CompiledRobots Get(String host) {
+        Entry entry = entries_.get(host);
+        if (entry != null && IsExpired(entry, clock_.getAsLong())) {
+            Remove(host, entry);
+            ++expiration_count_;
+            entry = null;
+        }
+        if (entry == null) {
+            ++miss_count_;
+            return null;
+        }
+        ++hit_count_;
+        return entry.shared.robots;
+    }
+
+    // Returns the rules for 'host', compiling and storing the body returned by
+    // 'body_loader' on a miss. The loader runs without holding the cache lock,
+    // so concurrent misses for one host may load it more than once. A loader
+    // returns null if the body could not be fetched; nothing is stored then,
+    // and null is returned, so that the next lookup tries again.
+    public CompiledRobots Get(String host, Function<String, String> body_loader) {
+        CompiledRobots robots = Get(host);
+        if (robots == null) {
+            String robots_body = body_loader.apply(host);
+            if (robots_body == null) {
+                return null;
+            }
+            robots = Put(host, robots_body);
+        }
+        return robots;
+    }
+
+    // Stores the rules of 'robots_body' for 'host', compiling it only if no
+    // other host has the same body. Compilation runs without holding the
+    // cache lock, so concurrent puts of a new body may compile it more than
+    // once; all but the first result are dropped.
+    public CompiledRobots Put(String host, String robots_body) {
+        Objects.requireNonNull(robots_body, "robots_body");
+        ContentDigest digest = ContentDigest.Of(robots_body);
+        synchronized (this) {
+            Shared shared = shared_.get(digest);
+            if (shared != null) {
+                ++shared_put_count_;
+                Put(host, shared);
+                return shared.robots;
+            }
+        }
+        CompiledRobots robots = CompiledRobots.Compile(robots_body);
+        synchronized (this) {
+            Shared shared = shared_.get(digest);
+            if (shared == null) {
+                shared = new Shared(robots, digest);
+                shared_.put(digest, shared);
+                weight_ += robots.EstimatedSize();
+            } else {
+                ++shared_put_count_;
+            }
+            Put(host, shared);
+            return shared.robots;
+        }
+    }
+
+    // Stores 'robots' for 'host', unshared.
+    public synchronized void Put(String host, CompiledRobots robots) {
+        weight_ += robots.EstimatedSize();
+        Put(host, new Shared(robots, null));
+    }
+
+    private void Put(String host, Shared shared) {
+        ++shared.references;
+        Entry previous = entries_.put(host, new Entry(shared, clock_.getAsLong() + ttl_nanos_));
+        if (previous != null) {
+            Release(previous.shared);
+        }
+        EvictToMaxWeight();
+    }
+
+    public synchronized void Invalidate(String host) {
+        Entry entry = entries_.get(host);
+        if (entry != null) {
+            Remove(host, entry);
+        }
+    }
+
+    public synchronized void InvalidateAll() {
+        entries_.clear();
+        shared_.clear();
+        weight_ = 0;
+    }
+
+    // Drops all expired entries; they are otherwise only dropped when looked up
+    // or evicted.
+    public synchronized void CleanUp() {
+        long now = clock_.getAsLong();
+        Iterator<Map.Entry<String, Entry>> it = entries_.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next().getValue();
+            if (IsExpired(entry, now)) {
+                it.remove();
+                Release(entry.shared);
+                ++expiration_count_;
+            }
+        }
+    }
+
+    public synchronized int Size() {
+        return entries_.size();
+    }
+
+    // Sum of EstimatedSize() over all distinct rules stored.
+    public synchronized long Weight() {
+        return weight_;
+    }
+
+    // Number of distinct bodies stored by Put(host, robots_body).
+    public synchronized int DistinctBodyCount() {
+        return shared_.size();
+    }
+
+    // Number of Put(host, robots_body) calls that reused the rules of another
+    // host instead of compiling the body.
+    public synchronized long SharedPutCount() {
+        return shared_put_count_;
+    }
+
+    public synchronized long HitCount() {
+        return hit_count_;
+    }
+
+    public synchronized long MissCount() {
+        return miss_count_;
+    }
+
+    // Number of entries dropped to stay within the max weight.
+    public synchronized long EvictionCount() {
+        return eviction_count_;
+    }
+
+    // Number of entries dropped because their ttl passed.
+    public synchronized long ExpirationCount() {
+        return expiration_count_;
+    }
+
+    private static boolean IsExpired(Entry entry, long now) {
+        return now - entry.expire_at_nanos >= 0;
+    }
+
+    private void Remove(String host, Entry entry) {
+        entries_.remove(host);
+        Release(entry.shared);
+    }
+
+    // Drops a reference to 'shared', and the rules with the last one.
+    private void Release(Shared shared) {
+        if (--shared.references == 0) {
+            weight_ -= shared.robots.EstimatedSize();
+            if (shared.digest != null) {
+                shared_.remove(shared.digest);
+            }
+        }
+    }
+
+    private void EvictToMaxWeight() {
+        // Hosts holding the last reference to their rules, least recently
+        // used first.
+        Iterator<Entry> it = entries_.values().iterator();
+        while (weight_ > max_weight_ && it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.shared.references == 1) {
+                it.remove();
+                Release(entry.shared);
+                ++eviction_count_;
+            }
+        }
+        // Then any host, until the last user of some shared rules goes.
+        it = entries_.values().iterator();
+        while (weight_ > max_weight_ && it.hasNext()) {
+            Entry entry = it.next();
+            it.remove();
+            Release(entry.shared);
+            ++eviction_count_;
+        }
+    }
+
+    private static class Entry {
+        final Shared shared;
+        final long expire_at_nanos;
+
+        Entry(Shared shared, long expire_at_nanos) {
+            this.shared = shared;
+            this.expire_at_nanos = expire_at_nanos;
+        }
+    }
+
+    // Rules and the number of entries using them.
+    private static class Shared {
+        final CompiledRobots robots;
+        // Null for rules stored by Put(host, robots).
+        final ContentDigest digest;
+        int references;
+
+        Shared(CompiledRobots robots, ContentDigest digest) {
+            this.robots = robots;
+            this.digest = digest;
+        }
+    }
+}
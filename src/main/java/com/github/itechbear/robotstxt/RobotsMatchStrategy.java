@@ -1,48 +1,203 @@
 package com.github.itechbear.robotstxt;
 
+import java.util.Arrays;
+
 public abstract class RobotsMatchStrategy {
+    private static final ThreadLocal<Scratch> thread_scratch_ = ThreadLocal.withInitial(Scratch::new);
+
     protected static boolean Matches(String path, String pattern) {
+        return Matches(path, pattern, thread_scratch_.get());
+    }
+
+    // Same as above, using the buffers of 'scratch' instead of allocating.
+    //
+    // The '*'s split the pattern into literal segments. The first one must
+    // start the path, and every other one must occur after the previous one;
+    // taking the leftmost occurrence each time leaves the most room for the
+    // remaining segments, so no backtracking is needed. With a trailing '$',
+    // the last segment must end the path instead. Segments are searched with
+    // Knuth-Morris-Pratt and the search never goes back in the path, so a
+    // check takes O(path length + pattern length) time, however many '*' the
+    // pattern has.
+    protected static boolean Matches(String path, String pattern, Scratch scratch) {
+        int end = pattern.length();
+        // A '$' anywhere else is a literal char.
+        boolean anchored = end > 0 && pattern.charAt(end - 1) == '$';
+        return Matches(path, pattern, anchored ? end - 1 : end, anchored, scratch);
+    }
+
+    // Same as above for the pattern pattern[0, end), followed by a '$' if
+    // 'anchored'; the path and the pattern may be any views, e.g. a PathView
+    // or stored bytes.
+    static boolean Matches(CharSequence path, CharSequence pattern, int end, boolean anchored, Scratch scratch) {
         int pathlen = path.length();
-        // bsl::FixedArray<size_t> pos(pathlen + 1);
-        int[] pos = new int[pathlen + 1];
-        int numpos;
-
-        // The pos[] array holds a sorted list of indexes of 'path', with length
-        // 'numpos'.  At the start and end of each iteration of the main loop below,
-        // the pos[] array will hold a list of the prefixes of the 'path' which can
-        // match the current prefix of 'pattern'. If this list is ever empty,
-        // return false. If we reach the end of 'pattern' with at least one element
-        // in pos[], return true.
-
-        pos[0] = 0;
-        numpos = 1;
-
-        for (int j = 0; j < pattern.length(); ++j) {
-            if (pattern.charAt(j) == '$' && j == pattern.length() - 1) {
-                return (pos[numpos - 1] == pathlen);
-            }
-            if (pattern.charAt(j) == '*') {
-                numpos = pathlen - pos[0] + 1;
-                for (int i = 1; i < numpos; i++) {
-                    pos[i] = pos[i - 1] + 1;
-                }
-            } else {
-                // Includes '$' when not at end of pattern.
-                int newnumpos = 0;
-                for (int i = 0; i < numpos; i++) {
-                    if (pos[i] < pathlen && path.charAt(pos[i]) == pattern.charAt(j)) {
-                        pos[newnumpos++] = pos[i] + 1;
-                    }
+        int segment_end = IndexOfStar(pattern, 0, end);
+        if (!RegionMatches(path, 0, pattern, 0, segment_end)) {
+            return false;
+        }
+        if (segment_end == end) {
+            return !anchored || pathlen == end;
+        }
+
+        int pos = segment_end;
+        int segment_begin = segment_end + 1;
+        while (true) {
+            segment_end = IndexOfStar(pattern, segment_begin, end);
+            int length = segment_end - segment_begin;
+            if (segment_end == end) {
+                if (anchored) {
+                    return pathlen - length >= pos
+                            && RegionMatches(path, pathlen - length, pattern, segment_begin, length);
                 }
-                numpos = newnumpos;
-                if (numpos == 0) return false;
+                return IndexOf(path, pos, pattern, segment_begin, segment_end, scratch) >= 0;
             }
+            int found = IndexOf(path, pos, pattern, segment_begin, segment_end, scratch);
+            if (found < 0) {
+                return false;
+            }
+            pos = found + length;
+            segment_begin = segment_end + 1;
         }
+    }
 
+    // Returns the index of the first '*' in pattern[from, end), or 'end'.
+    private static int IndexOfStar(CharSequence pattern, int from, int end) {
+        for (int i = from; i < end; ++i) {
+            if (pattern.charAt(i) == '*') {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    // Same as path.regionMatches(offset, pattern, begin, length).
+    private static boolean RegionMatches(CharSequence path, int offset, CharSequence pattern, int begin, int length) {
+        if (offset + length > path.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; ++i) {
+            if (path.charAt(offset + i) != pattern.charAt(begin + i)) {
+                return false;
+            }
+        }
         return true;
     }
 
+    // Returns the first index >= 'from' at which pattern[begin, end) occurs in
+    // 'path', or -1. Unlike String.indexOf(), takes linear time.
+    private static int IndexOf(CharSequence path, int from, CharSequence pattern, int begin, int end,
+                               Scratch scratch) {
+        int length = end - begin;
+        if (length == 0) {
+            return from;
+        }
+        if (length == 1) {
+            char ch = pattern.charAt(begin);
+            for (int i = from; i < path.length(); ++i) {
+                if (path.charAt(i) == ch) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        // failure[k] is the length of the longest proper prefix of the first
+        // k + 1 chars of the segment that is also a suffix of them.
+        int[] failure = scratch.FailureTable(length);
+        failure[0] = 0;
+        for (int k = 1, matched = 0; k < length; ++k) {
+            char ch = pattern.charAt(begin + k);
+            while (matched > 0 && pattern.charAt(begin + matched) != ch) {
+                matched = failure[matched - 1];
+            }
+            if (pattern.charAt(begin + matched) == ch) {
+                ++matched;
+            }
+            failure[k] = matched;
+        }
+        for (int i = from, matched = 0; i < path.length(); ++i) {
+            char ch = path.charAt(i);
+            while (matched > 0 && pattern.charAt(begin + matched) != ch) {
+                matched = failure[matched - 1];
+            }
+            if (pattern.charAt(begin + matched) == ch && ++matched == length) {
+                return i - length + 1;
+            }
+        }
+        return -1;
+    }
+
+    // Returns the scratch state owned by the calling thread. Callers running on
+    // many short-lived or virtual threads should rather keep their own Scratch.
+    public static Scratch ThreadScratch() {
+        return thread_scratch_.get();
+    }
+
     abstract public int MatchAllow(String path, String pattern);
 
     abstract public int MatchDisallow(String path, String pattern);
+
+    // Same as MatchAllow(path, pattern), but may use the buffers of 'scratch'
+    // instead of allocating. Strategies built on Matches() should override this.
+    public int MatchAllow(String path, String pattern, Scratch scratch) {
+        return MatchAllow(path, pattern);
+    }
+
+    public int MatchDisallow(String path, String pattern, Scratch scratch) {
+        return MatchDisallow(path, pattern);
+    }
+
+    // Same as MatchAllow(path, pattern.Text(), scratch). Strategies can use the
+    // precomputed classification of 'pattern' to skip the general algorithm.
+    public int MatchAllow(String path, RobotsPattern pattern, Scratch scratch) {
+        return MatchAllow(path, pattern.Text(), scratch);
+    }
+
+    public int MatchDisallow(String path, RobotsPattern pattern, Scratch scratch) {
+        return MatchDisallow(path, pattern.Text(), scratch);
+    }
+
+    // Buffers for Matches(), grown to the longest pattern segment seen. A
+    // Scratch must only be used by one thread at a time.
+    public static final class Scratch {
+        private int[] failure_table_ = new int[64];
+        // Results of the last RuleIndex.Match().
+        long allow_match;
+        long disallow_match;
+        // Views of the URL being checked by CompiledRobots.
+        final PathView path = new PathView();
+        final CharSlice url_bytes = new CharSlice();
+        // A pattern matched in place by OffHeapRobotsStore.
+        final BufferSlice stored_pattern = new BufferSlice();
+        private boolean[] specific_groups_ = new boolean[16];
+        // The last user agent folded by FoldedAgent(), and its key.
+        private String agent_;
+        private String folded_agent_;
+
+        // Returns a cleared array of at least 'size' flags.
+        boolean[] SpecificGroups(int size) {
+            if (specific_groups_.length < size) {
+                specific_groups_ = new boolean[Math.max(size, specific_groups_.length * 2)];
+            } else {
+                Arrays.fill(specific_groups_, 0, size, false);
+            }
+            return specific_groups_;
+        }
+
+        // CompiledRobots.FoldCase(agent), remembered for the same agent String,
+        // as callers tend to check with the same agents over and over.
+        String FoldedAgent(String agent) {
+            if (agent != agent_) {
+                folded_agent_ = CompiledRobots.FoldCase(agent);
+                agent_ = agent;
+            }
+            return folded_agent_;
+        }
+
+        int[] FailureTable(int size) {
+            if (failure_table_.length < size) {
+                failure_table_ = new int[Math.max(size, failure_table_.length * 2)];
+            }
+            return failure_table_;
+        }
+    }
 }
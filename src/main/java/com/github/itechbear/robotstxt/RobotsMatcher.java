@@ -19,6 +19,8 @@ public class RobotsMatcher implements RobotsParseHandler {
     private List<String> user_agents_;
 
     private RobotsMatchStrategy match_strategy_;
+    // Reused by every match of this matcher.
+    private final RobotsMatchStrategy.Scratch match_scratch_ = new RobotsMatchStrategy.Scratch();
 
     public RobotsMatcher() {
         allow_ = new MatchHierarchy();
@@ -41,7 +43,9 @@ public class RobotsMatcher implements RobotsParseHandler {
         // is asked to provide it in escaped form already.
         String path = Util.GetPathParamsQuery(url);
         InitUserAgentsAndPath(user_agents, path);
-        Util.ParseRobotsTxt(robots_body, this);
+        // Rules outside the groups for 'user_agents' and '*' are ignored by
+        // HandleAllow() and HandleDisallow(), so the parser skips them.
+        Util.ParseRobotsTxt(robots_body, this, user_agents);
         return !Disallow();
     }
 
@@ -60,30 +64,36 @@ public class RobotsMatcher implements RobotsParseHandler {
         return user_agent.length() > 0 && ExtractUserAgent(user_agent).equals(user_agent);
     }
 
-    protected static String ExtractUserAgent(String user_agent) {
+    protected static String ExtractUserAgent(CharSequence user_agent) {
         // Allowed characters in user-agent are [a-zA-Z_-].
-        int end = 0;
-        while (end < user_agent.length() && (Util.isEnglishLetter(user_agent.charAt(end)) || user_agent.charAt(end) == '-' || user_agent.charAt(end) == '_')) {
-            ++end;
-        }
-        return user_agent.substring(0, end);
+        return user_agent.subSequence(0, Util.AgentTokenLength(user_agent)).toString();
     }
 
 
     // Returns true if we are disallowed from crawling a matching URI.
     protected boolean Disallow() {
-        if (allow_.specific.priority() > 0 || disallow_.specific.priority() > 0) {
-            return (disallow_.specific.priority() > allow_.specific.priority());
+        return Disallow(allow_.global.priority(), allow_.specific.priority(),
+                disallow_.global.priority(), disallow_.specific.priority(),
+                ever_seen_specific_agent_);
+    }
+
+    // Shared with CompiledRobots, which keeps the match state of a check in
+    // local variables instead of in a RobotsMatcher.
+    static boolean Disallow(int allow_global, int allow_specific,
+                            int disallow_global, int disallow_specific,
+                            boolean ever_seen_specific_agent) {
+        if (allow_specific > 0 || disallow_specific > 0) {
+            return (disallow_specific > allow_specific);
         }
 
-        if (ever_seen_specific_agent_) {
+        if (ever_seen_specific_agent) {
             // Matching group for user-agent but either without disallow or empty one,
             // i.e. priority == 0.
             return false;
         }
 
-        if (disallow_.global.priority() > 0 || allow_.global.priority() > 0) {
-            return disallow_.global.priority() > allow_.global.priority();
+        if (disallow_global > 0 || allow_global > 0) {
+            return disallow_global > allow_global;
         }
         return false;
     }
@@ -140,7 +150,7 @@ public class RobotsMatcher implements RobotsParseHandler {
 
         // Google-specific optimization: a '*' followed by space and more characters
         // in a user-agent record is still regarded a global rule.
-        if (user_agent.charAt(0) == '*' && (user_agent.length() == 1 || Character.isWhitespace(user_agent.charAt(1)))) {
+        if (Util.IsGlobalAgent(user_agent)) {
             seen_global_agent_ = true;
         } else {
             user_agent = ExtractUserAgent(user_agent);
@@ -156,7 +166,7 @@ public class RobotsMatcher implements RobotsParseHandler {
     public void HandleAllow(int line_num, String value) {
         if (!SeenAnyAgent()) return;
         seen_separator_ = true;
-        int priority = match_strategy_.MatchAllow(path_, value);
+        int priority = match_strategy_.MatchAllow(path_, value, match_scratch_);
         if (priority >= 0) {
             if (seen_specific_agent_) {
                 if (allow_.specific.priority() < priority) {
@@ -171,11 +181,9 @@ public class RobotsMatcher implements RobotsParseHandler {
         } else {
             // Google-specific optimization: 'index.htm' and 'index.html' are normalized
             // to '/'.
-            int slash_pos = value.lastIndexOf('/');
-
-            if (slash_pos >= 0 && value.substring(slash_pos).startsWith("/index.htm")) {
-                int len = slash_pos + 1;
-                HandleAllow(line_num, value.substring(0, len) + '$');
+            String index_alternative = RobotsPattern.IndexAlternative(value);
+            if (index_alternative != null) {
+                HandleAllow(line_num, index_alternative);
             }
         }
     }
@@ -183,7 +191,7 @@ public class RobotsMatcher implements RobotsParseHandler {
     public void HandleDisallow(int line_num, String value) {
         if (!SeenAnyAgent()) return;
         seen_separator_ = true;
-        int priority = match_strategy_.MatchDisallow(path_, value);
+        int priority = match_strategy_.MatchDisallow(path_, value, match_scratch_);
         if (priority >= 0) {
             if (seen_specific_agent_) {
                 if (disallow_.specific.priority() < priority) {
@@ -222,7 +230,7 @@ public class RobotsMatcher implements RobotsParseHandler {
     }
 
     static class Match {
-        private static final int kNoMatchPriority = -1;
+        static final int kNoMatchPriority = -1;
 
         private int priority_;
         private int line_;
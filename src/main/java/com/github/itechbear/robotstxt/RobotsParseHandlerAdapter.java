@@ -0,0 +1,39 @@
+package com.github.itechbear.robotstxt;
+
+// Feeds the callbacks of the parser to a RobotsParseHandler, copying every
+// key and value into a String.
+class RobotsParseHandlerAdapter implements RobotsParseSliceHandler {
+    private final RobotsParseHandler handler_;
+
+    RobotsParseHandlerAdapter(RobotsParseHandler handler) {
+        this.handler_ = handler;
+    }
+
+    public void HandleRobotsStart() {
+        handler_.HandleRobotsStart();
+    }
+
+    public void HandleRobotsEnd() {
+        handler_.HandleRobotsEnd();
+    }
+
+    public void HandleUserAgent(int line_num, CharSequence value) {
+        handler_.HandleUserAgent(line_num, value.toString());
+    }
+
+    public void HandleAllow(int line_num, CharSequence value) {
+        handler_.HandleAllow(line_num, value.toString());
+    }
+
+    public void HandleDisallow(int line_num, CharSequence value) {
+        handler_.HandleDisallow(line_num, value.toString());
+    }
+
+    public void HandleSitemap(int line_num, CharSequence value) {
+        handler_.HandleSitemap(line_num, value.toString());
+    }
+
+    public void HandleUnknownAction(int line_num, CharSequence action, CharSequence value) {
+        handler_.HandleUnknownAction(line_num, action.toString(), value.toString());
+    }
+}
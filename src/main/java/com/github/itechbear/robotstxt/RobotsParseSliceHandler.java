@@ -0,0 +1,22 @@
+package com.github.itechbear.robotstxt;
+
+// Parse callbacks receiving the keys and values as views into the parser's
+// buffers instead of fresh Strings, so that parsing produces no garbage per
+// line. A view is only valid until the callback returns and must be copied,
+// e.g. with toString(), to be kept.
+public interface RobotsParseSliceHandler {
+    void HandleRobotsStart();
+
+    void HandleRobotsEnd();
+
+    void HandleUserAgent(int line_num, CharSequence value);
+
+    void HandleAllow(int line_num, CharSequence value);
+
+    void HandleDisallow(int line_num, CharSequence value);
+
+    void HandleSitemap(int line_num, CharSequence value);
+
+    // Any other unrecognized name/value pairs.
+    void HandleUnknownAction(int line_num, CharSequence action, CharSequence value);
+}
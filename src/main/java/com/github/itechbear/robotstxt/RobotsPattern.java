@@ -0,0 +1,114 @@
+package com.github.itechbear.robotstxt;
+
+// An allow/disallow pattern classified once, so that the common shapes are
+// matched without the general wildcard algorithm of RobotsMatchStrategy:
+//   /private/       PREFIX: the path starts with the literal.
+//   /private/*      PREFIX as well, trailing '*'s (and a '$' after them) match
+//                   any rest of the path.
+//   /index.html$    EXACT: the path equals the literal.
+//   /*.php$         WILDCARD: anything else, see RobotsMatchStrategy.Matches().
+public final class RobotsPattern {
+    enum Kind {
+        PREFIX,
+        EXACT,
+        WILDCARD,
+    }
+
+    private final String text_;
+    private final Kind kind_;
+    // The pattern without its trailing '*'s and '$' for PREFIX and EXACT, the
+    // part before the first '*' for WILDCARD.
+    private final String literal_;
+
+    public RobotsPattern(String text) {
+        this.text_ = text;
+        int end = text.length();
+        boolean anchored = end > 0 && text.charAt(end - 1) == '$';
+        if (anchored) {
+            --end;
+        }
+        int literal_end = end;
+        while (literal_end > 0 && text.charAt(literal_end - 1) == '*') {
+            --literal_end;
+        }
+        if (text.lastIndexOf('*', literal_end - 1) >= 0) {
+            kind_ = Kind.WILDCARD;
+            literal_ = text.substring(0, text.indexOf('*'));
+        } else {
+            // A '$' right after a '*' matches the end of any path.
+            kind_ = anchored && literal_end == end ? Kind.EXACT : Kind.PREFIX;
+            literal_ = text.substring(0, literal_end);
+        }
+    }
+
+    // Google-specific optimization: 'index.htm' and 'index.html' are normalized
+    // to '/'. Returns the pattern an allow rule with 'value' also matches as,
+    // e.g. "/dir/$" for "/dir/index.html", or null.
+    static String IndexAlternative(String value) {
+        int slash_pos = value.lastIndexOf('/');
+        if (slash_pos >= 0 && value.startsWith("/index.htm", slash_pos)) {
+            return value.substring(0, slash_pos + 1) + '$';
+        }
+        return null;
+    }
+
+    public String Text() {
+        return text_;
+    }
+
+    // The priority of a match with RobotsMatchStrategy's longest match rule.
+    public int Length() {
+        return text_.length();
+    }
+
+    Kind GetKind() {
+        return kind_;
+    }
+
+    // The literal every path matching this pattern starts with.
+    String LiteralPrefix() {
+        return literal_;
+    }
+
+    // Same as RobotsMatchStrategy.Matches(path, Text()).
+    public boolean Matches(String path, RobotsMatchStrategy.Scratch scratch) {
+        switch (kind_) {
+            case PREFIX:
+                return path.startsWith(literal_);
+            case EXACT:
+                return path.equals(literal_);
+            default:
+                return RobotsMatchStrategy.Matches(path, text_, scratch);
+        }
+    }
+
+    // Same as above for a view of the path, e.g. a PathView.
+    boolean Matches(CharSequence path, RobotsMatchStrategy.Scratch scratch) {
+        switch (kind_) {
+            case PREFIX:
+                return StartsWithLiteral(path);
+            case EXACT:
+                return path.length() == literal_.length() && StartsWithLiteral(path);
+            default:
+                int end = text_.length();
+                boolean anchored = text_.charAt(end - 1) == '$';
+                return RobotsMatchStrategy.Matches(path, text_, anchored ? end - 1 : end, anchored, scratch);
+        }
+    }
+
+    private boolean StartsWithLiteral(CharSequence path) {
+        if (path.length() < literal_.length()) {
+            return false;
+        }
+        for (int i = 0; i < literal_.length(); ++i) {
+            if (path.charAt(i) != literal_.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String toString() {
+        return text_;
+    }
+}
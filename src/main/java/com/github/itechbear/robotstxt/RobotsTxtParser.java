@@ -1,128 +1,372 @@
 package com.github.itechbear.robotstxt;
 
-import java.util.AbstractMap;
-import java.util.Map;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
+// Splits a robots.txt into lines and key: value pairs by offsets into the body.
+// Keys and values are handed to the handler as reusable CharSlice views, and
+// escaped values are built in a reused buffer, so a parse allocates nothing per
+// line.
 public class RobotsTxtParser {
     private static final char[] utf_bom = {0xEF, 0xBB, 0xBF};
     private static final int kMaxLineLen = 2083 << 3;
 
-    private final String robots_body_;
-    private final RobotsParseHandler handler_;
+    // For a byte body, body_ is a CharSlice over robots_bytes_, so each char is
+    // one byte of the UTF-8 encoding.
+    private final CharSequence body_;
+    private final byte[] robots_bytes_;
+    // Where parsing starts in body_.
+    private final int begin_;
+    private final RobotsParseSliceHandler handler_;
 
+    // Scratch state reused for every line.
+    private final CharSlice key_ = new CharSlice();
+    private final CharSlice value_ = new CharSlice();
+    private final StringBuilder escaped_value_ = new StringBuilder();
+    // Only needed to decode non-ASCII user-agent, sitemap and unknown keys of a
+    // byte body, and allocated on first use.
+    private CharsetDecoder decoder_;
+    private ByteBuffer bytes_view_;
+    private CharBuffer decoded_key_;
+    private CharBuffer decoded_value_;
+
+    // State of a streamed parse, see Feed(). robots_bytes_ then holds the
+    // current line, viewed by body_ as stream_line_.
+    private final CharSlice stream_line_;
+    private int line_length_;
+    private int line_num_;
+    private boolean last_was_carriage_return_;
+    // Number of BOM bytes skipped so far, or -1 once past the BOM.
+    private int bom_pos_;
+
+    // If not null, allow and disallow lines are only emitted in groups for
+    // the global agent or one of these, see SetAgentFilter(). Groups are
+    // tracked as by RobotsMatcher.
+    private List<String> agent_filter_;
+    private boolean in_relevant_group_;
+    private boolean seen_separator_;
 
     RobotsTxtParser(String robots_body,
                     RobotsParseHandler handler) {
-        this.robots_body_ = robots_body;
+        this(robots_body, new RobotsParseHandlerAdapter(handler));
+    }
+
+    RobotsTxtParser(CharSequence robots_body,
+                    RobotsParseSliceHandler handler) {
+        this.body_ = robots_body;
+        this.robots_bytes_ = null;
+        this.begin_ = 0;
         this.handler_ = handler;
+        this.stream_line_ = null;
     }
 
-    private static Map.Entry<String, String> GetKeyAndValueFrom(String line) {
-        // remove trailing comments
-        int pos = line.indexOf('#');
-        if (pos >= 0) {
-            line = line.substring(0, pos);
-        }
-        line = line.trim();
+    // Parses the UTF-8 encoded body in robots_body[offset, offset + length)
+    // without decoding it: values of rules are %-escaped straight from the
+    // bytes, as in the Google original.
+    RobotsTxtParser(byte[] robots_body, int offset, int length,
+                    RobotsParseSliceHandler handler) {
+        assert offset >= 0 && length >= 0 && offset + length <= robots_body.length;
+        this.body_ = new CharSlice().Reset(robots_body, 0, offset + length);
+        this.robots_bytes_ = robots_body;
+        this.begin_ = offset;
+        this.handler_ = handler;
+        this.stream_line_ = null;
+    }
 
-        // Rules must match the following pattern:
-        //   <key>[ \t]*:[ \t]*<value>
-        // char* sep = strchr(line, ':');
-        int sep = line.indexOf(':');
-        if (sep < 0) {
-            // Google-specific optimization: some people forget the colon, so we need to
-            // accept whitespace in its stead.
-            // static const char * const kWhite = " \t";
-            // sep = strpbrk(line, kWhite);
-            sep = Util.FindFirstCharOf(line, " \t", 0);
-        }
-        if (sep < 0) {
-            return null;
-        }
+    // Parses a UTF-8 encoded body handed over in chunks: call Start(), then
+    // Feed() for each chunk in order, then Finish(), see
+    // IncrementalRobotsTxtParser. All line state lives in fields, so a parse
+    // can be suspended after any byte. Only the current line is
+    // buffered, and only the first kMaxLineLen - 1 bytes of it, which are all
+    // that Parse() looks at.
+    RobotsTxtParser(RobotsParseSliceHandler handler) {
+        this.robots_bytes_ = new byte[kMaxLineLen - 1];
+        this.stream_line_ = new CharSlice().Reset(robots_bytes_, 0, 0);
+        this.body_ = stream_line_;
+        this.begin_ = 0;
+        this.handler_ = handler;
+    }
 
-        String key = line.substring(0, sep).trim();
-        String value = line.substring(sep + 1).trim();
-        if (value.isEmpty()) {
-            return null;
-        }
-        return new AbstractMap.SimpleImmutableEntry<String, String>(key, value);
+    // Skips the allow and disallow lines of groups that are neither for the
+    // global agent '*' nor for one of 'user_agents', without escaping their
+    // values or calling the handler for them. A RobotsMatcher ignores these
+    // lines anyway; other handlers only see the rules that can apply to
+    // 'user_agents'. Null parses all lines.
+    void SetAgentFilter(List<String> user_agents) {
+        agent_filter_ = user_agents;
     }
 
     public void Parse() {
-        // UTF-8 byte order marks.
-
-
         // Certain browsers limit the URL length to 2083 bytes. In a robots.txt, it's
         // fairly safe to assume any valid line isn't going to be more than many times
         // that max url length of 2KB. We want some padding for
         // UTF-8 encoding/nulls/etc. but a much smaller bound would be okay as well.
         // If so, we can ignore the chars on a line past that.
-
-        // Allocate a buffer used to process the current line.
-        StringBuilder line_buffer = new StringBuilder(kMaxLineLen);
-        // last_line_pos is the last writeable pos within the line array
-        // (only a final '\0' may go here).
-        int line_pos = 0;
+        final int end = body_.length();
         int line_num = 0;
-        int bom_pos = 0;
         boolean last_was_carriage_return = false;
+        in_relevant_group_ = seen_separator_ = false;
         handler_.HandleRobotsStart();
 
+        int pos = begin_;
+        // Google-specific optimization: UTF-8 byte order marks should never
+        // appear in a robots.txt file, but they do nevertheless. Skipping
+        // possible BOM-prefix in the first bytes of the input.
+        for (int bom_pos = 0; bom_pos < utf_bom.length && pos < end
+                && body_.charAt(pos) == utf_bom[bom_pos]; ++bom_pos) {
+            ++pos;
+        }
 
-        for (char ch : robots_body_.toCharArray()) {
-            // Google-specific optimization: UTF-8 byte order marks should never
-            // appear in a robots.txt file, but they do nevertheless. Skipping
-            // possible BOM-prefix in the first bytes of the input.
-            if (bom_pos < utf_bom.length && ch == utf_bom[bom_pos++]) {
+        int line_start = pos;
+        for (; pos < end; ++pos) {
+            char ch = body_.charAt(pos);
+            if (ch != 0x0A && ch != 0x0D) {  // Non-line-ending char case.
                 continue;
             }
-            bom_pos = utf_bom.length;
-            if (ch != 0x0A && ch != 0x0D) {  // Non-line-ending char case.
-                // Put in next spot on current line, as long as there's room.
-                if (line_pos < kMaxLineLen - 1) {
-                    line_buffer.append(ch);
-                    ++line_pos;
-                }
-            } else {                         // Line-ending character char case.
-                // Only emit an empty line if this was not due to the second character
-                // of the DOS line-ending \r\n .
-                boolean is_CRLF_continuation = (line_pos == 0) && last_was_carriage_return && ch == 0x0A;
-                if (!is_CRLF_continuation) {
-                    ParseAndEmitLine(++line_num, line_buffer.toString());
+            // Only emit an empty line if this was not due to the second character
+            // of the DOS line-ending \r\n .
+            boolean is_CRLF_continuation = (pos == line_start) && last_was_carriage_return && ch == 0x0A;
+            if (!is_CRLF_continuation) {
+                ParseAndEmitLine(++line_num, line_start, pos);
+            }
+            line_start = pos + 1;
+            last_was_carriage_return = (ch == 0x0D);
+        }
+
+        ParseAndEmitLine(++line_num, line_start, end);
+        handler_.HandleRobotsEnd();
+    }
+
+    void Start() {
+        line_length_ = 0;
+        line_num_ = 0;
+        last_was_carriage_return_ = false;
+        bom_pos_ = 0;
+        in_relevant_group_ = seen_separator_ = false;
+        handler_.HandleRobotsStart();
+    }
+
+    // Parses the next 'length' bytes of the body, from 'bytes' at 'offset',
+    // emitting the lines they complete. Same as Parse() on the whole body.
+    void Feed(byte[] bytes, int offset, int length) {
+        int pos = offset;
+        int end = offset + length;
+        // Skip a BOM prefix, which may be split across chunks.
+        while (bom_pos_ >= 0 && pos < end) {
+            if (bom_pos_ < utf_bom.length && (bytes[pos] & 0xFF) == utf_bom[bom_pos_]) {
+                ++bom_pos_;
+                ++pos;
+            } else {
+                bom_pos_ = -1;
+            }
+        }
+        for (; pos < end; ++pos) {
+            byte ch = bytes[pos];
+            if (ch != 0x0A && ch != 0x0D) {
+                // We can ignore the chars on a line past kMaxLineLen.
+                if (line_length_ < robots_bytes_.length) {
+                    robots_bytes_[line_length_++] = ch;
                 }
-                line_buffer = new StringBuilder();
-                line_pos = 0;
-                last_was_carriage_return = (ch == 0x0D);
+                continue;
+            }
+            boolean is_CRLF_continuation = line_length_ == 0 && last_was_carriage_return_ && ch == 0x0A;
+            if (!is_CRLF_continuation) {
+                EmitStreamedLine();
             }
+            line_length_ = 0;
+            last_was_carriage_return_ = (ch == 0x0D);
         }
+    }
 
-        ParseAndEmitLine(++line_num, line_buffer.toString());
+    // Emits the last line, which has no line end.
+    void Finish() {
+        EmitStreamedLine();
         handler_.HandleRobotsEnd();
     }
 
-    private void ParseAndEmitLine(int current_line, String line) {
-        final Map.Entry<String, String> keyAndValueFrom = GetKeyAndValueFrom(line);
-        if (null == keyAndValueFrom) {
+    private void EmitStreamedLine() {
+        stream_line_.Reset(robots_bytes_, 0, line_length_);
+        ParseAndEmitLine(++line_num_, 0, line_length_);
+    }
+
+    // Emits the line of body_ between 'begin' and 'end'.
+    private void ParseAndEmitLine(int current_line, int begin, int end) {
+        // We can ignore the chars on a line past kMaxLineLen.
+        end = Math.min(end, begin + kMaxLineLen - 1);
+        // remove trailing comments
+        int comment = IndexOf(begin, end, '#');
+        if (comment >= 0) {
+            end = comment;
+        }
+        begin = SkipWhitespace(begin, end);
+        end = TrimTrailingWhitespace(begin, end);
+
+        // Rules must match the following pattern:
+        //   <key>[ \t]*:[ \t]*<value>
+        int sep = IndexOf(begin, end, ':');
+        if (sep < 0) {
+            // Google-specific optimization: some people forget the colon, so we need to
+            // accept whitespace in its stead.
+            sep = IndexOf(begin, end, ' ');
+            int tab = IndexOf(begin, end, '\t');
+            if (sep < 0 || (tab >= 0 && tab < sep)) {
+                sep = tab;
+            }
+        }
+        if (sep < 0) {
             return;
         }
 
-        ParsedRobotsKey key = new ParsedRobotsKey();
-        key.Parse(keyAndValueFrom.getKey());
-        if (NeedEscapeValueForKey(key)) {
-            String escaped_value = Util.MaybeEscapePattern(keyAndValueFrom.getValue());
-            Util.EmitKeyValueToHandler(current_line, key, escaped_value, handler_);
-        } else {
-            Util.EmitKeyValueToHandler(current_line, key, keyAndValueFrom.getValue(), handler_);
+        int value_begin = SkipWhitespace(sep + 1, end);
+        if (value_begin == end) {
+            return;
         }
-    }
+        int key_end = TrimTrailingWhitespace(begin, sep);
 
-    private boolean NeedEscapeValueForKey(ParsedRobotsKey key) {
-        switch (key.Type()) {
+        CharSequence key = Text(begin, key_end, true);
+        ParsedRobotsKey.KeyType type = ParsedRobotsKey.ParseType(key, 0, key.length());
+        if (agent_filter_ != null && !FilterLine(type, value_begin, end)) {
+            return;
+        }
+        switch (type) {
             case USER_AGENT:
+                handler_.HandleUserAgent(current_line, Text(value_begin, end, false));
+                break;
+            case ALLOW:
+                handler_.HandleAllow(current_line, EscapedText(value_begin, end));
+                break;
+            case DISALLOW:
+                handler_.HandleDisallow(current_line, EscapedText(value_begin, end));
+                break;
             case SITEMAP:
-                return false;
+                handler_.HandleSitemap(current_line, Text(value_begin, end, false));
+                break;
+            case UNKNOWN:
+                handler_.HandleUnknownAction(current_line, key, EscapedText(value_begin, end));
+                break;
+        }
+    }
+
+    // Tracks the group state of the agent filter as RobotsMatcher's handlers
+    // do, and returns false for lines to skip.
+    private boolean FilterLine(ParsedRobotsKey.KeyType type, int value_begin, int end) {
+        switch (type) {
+            case USER_AGENT:
+                if (seen_separator_) {
+                    in_relevant_group_ = seen_separator_ = false;
+                }
+                if (!in_relevant_group_) {
+                    in_relevant_group_ = IsRelevantAgent(Text(value_begin, end, false));
+                }
+                return true;
+            case ALLOW:
+            case DISALLOW:
+                // Rules of skipped groups are no separators, as for RobotsMatcher.
+                seen_separator_ |= in_relevant_group_;
+                return in_relevant_group_;
             default:
+                seen_separator_ = true;
+                return true;
+        }
+    }
+
+    // Same as RobotsMatcher.HandleUserAgent() finding the global agent or one
+    // of agent_filter_, without copying the token.
+    private boolean IsRelevantAgent(CharSequence user_agent) {
+        if (Util.IsGlobalAgent(user_agent)) {
+            return true;
+        }
+        int length = Util.AgentTokenLength(user_agent);
+        for (int a = 0; a < agent_filter_.size(); ++a) {
+            String agent = agent_filter_.get(a);
+            if (agent.length() == length && Util.StartsWithIgnoreCase(user_agent, 0, length, agent)) {
                 return true;
+            }
+        }
+        return false;
+    }
+
+    // Returns body_[begin, end) as text, in the key's or the value's buffers.
+    private CharSequence Text(int begin, int end, boolean is_key) {
+        if (robots_bytes_ != null && !IsAscii(begin, end)) {
+            return Decode(begin, end, is_key);
+        }
+        return (is_key ? key_ : value_).Reset(body_, begin, end);
+    }
+
+    // Returns body_[begin, end) as an escaped pattern, see Util.MaybeEscapePattern().
+    private CharSequence EscapedText(int begin, int end) {
+        escaped_value_.setLength(0);
+        if (!Util.AppendEscapedPatternIfChanged(body_, begin, end, robots_bytes_ != null, escaped_value_)) {
+            // Escaped patterns are ASCII, so a byte body needs no decoding here.
+            return value_.Reset(body_, begin, end);
+        }
+        return value_.Reset(escaped_value_, 0, escaped_value_.length());
+    }
+
+    private CharSequence Decode(int begin, int end, boolean is_key) {
+        if (decoder_ == null) {
+            decoder_ = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            bytes_view_ = ByteBuffer.wrap(robots_bytes_);
+        }
+        CharBuffer decoded = is_key ? decoded_key_ : decoded_value_;
+        // UTF-8 never decodes to more chars than it has bytes.
+        if (decoded == null || decoded.capacity() < end - begin) {
+            decoded = CharBuffer.allocate(Math.max(end - begin, 256));
+            if (is_key) {
+                decoded_key_ = decoded;
+            } else {
+                decoded_value_ = decoded;
+            }
+        }
+        // Through Buffer, as the covariant overrides of JDK 9+ are missing on
+        // Java 8 runtimes.
+        ((Buffer) bytes_view_).limit(end).position(begin);
+        ((Buffer) decoded).clear();
+        decoder_.reset();
+        decoder_.decode(bytes_view_, decoded, true);
+        decoder_.flush(decoded);
+        ((Buffer) decoded).flip();
+        return decoded;
+    }
+
+    private boolean IsAscii(int begin, int end) {
+        for (int i = begin; i < end; ++i) {
+            if (body_.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Whitespace as in String.trim(): any control character or space.
+    private int SkipWhitespace(int begin, int end) {
+        while (begin < end && body_.charAt(begin) <= ' ') {
+            ++begin;
+        }
+        return begin;
+    }
+
+    private int TrimTrailingWhitespace(int begin, int end) {
+        while (end > begin && body_.charAt(end - 1) <= ' ') {
+            --end;
+        }
+        return end;
+    }
+
+    private int IndexOf(int begin, int end, char ch) {
+        for (int i = begin; i < end; ++i) {
+            if (body_.charAt(i) == ch) {
+                return i;
+            }
         }
+        return -1;
     }
 }
@@ -0,0 +1,58 @@
+package com.github.itechbear.robotstxt;
+
+// The allow and disallow rules of one group, answering which of them match a
+// path best. A match is packed into a long so that comparing two packed
+// matches prefers the higher priority and, among equal priorities, the earlier
+// line, which is the rule RobotsMatcher applies when it sees the rules in file
+// order.
+abstract class RuleIndex {
+    static final long kNoMatch = Pack(RobotsMatcher.Match.kNoMatchPriority, 0);
+
+    // Minimal number of rules for which the AUTO engine builds a trie instead of
+    // trying the rules one by one.
+    static final int kMinRulesForTrie = 8;
+
+    static long Pack(int priority, int line) {
+        return ((long) priority << 32) | (Integer.MAX_VALUE - line);
+    }
+
+    static int Priority(long match) {
+        return (int) (match >> 32);
+    }
+
+    static int Line(long match) {
+        return Integer.MAX_VALUE - (int) match;
+    }
+
+    // Builds the index of the 'rules' of a group, in file order.
+    static RuleIndex Create(CompiledRobots.Rule[] rules, RobotsMatchStrategy match_strategy,
+                            CompiledRobots.Engine engine) {
+        // Only the longest match rule can be answered by a trie or an automaton.
+        if (match_strategy.getClass() != LongestMatchRobotsMatchStrategy.class) {
+            return new LinearRuleIndex(rules, match_strategy);
+        }
+        switch (engine) {
+            case LINEAR:
+                return new LinearRuleIndex(rules, match_strategy);
+            case TRIE:
+                return new TrieRuleIndex(rules);
+            case AUTOMATON:
+                AutomatonRuleIndex automaton = AutomatonRuleIndex.Create(rules);
+                if (automaton != null) {
+                    return automaton;
+                }
+                // Too many states, a trie is the next best.
+                return new TrieRuleIndex(rules);
+            default:
+                return rules.length >= kMinRulesForTrie
+                        ? new TrieRuleIndex(rules) : new LinearRuleIndex(rules, match_strategy);
+        }
+    }
+
+    // Stores the best packed allow and disallow matches of 'path', or kNoMatch,
+    // in scratch.allow_match and scratch.disallow_match.
+    abstract void Match(CharSequence path, RobotsMatchStrategy.Scratch scratch);
+
+    // Approximate heap footprint in bytes, not counting the rules themselves.
+    abstract long EstimatedSize();
+}
@@ -0,0 +1,198 @@
+package com.github.itechbear.robotstxt;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+// A trie over the literal prefixes of the patterns, for the longest match
+// rule. Walking the path down the trie visits exactly the rules whose literal
+// prefix the path starts with, so a lookup costs about the length of the path,
+// however many rules there are. Each node keeps the best allow and disallow
+// PREFIX and EXACT matches of the literals ending there, and the WILDCARD
+// patterns whose literal part before the first '*' ends there; only those
+// wildcards are tried with the general algorithm.
+final class TrieRuleIndex extends RuleIndex {
+    // Indexes of the per-type arrays in a node.
+    private static final int kAllow = 0;
+    private static final int kDisallow = 1;
+
+    private final Node root_ = new Node();
+    private int node_count_ = 1;
+    private int wildcard_count_;
+
+    TrieRuleIndex(CompiledRobots.Rule[] rules) {
+        for (CompiledRobots.Rule rule : rules) {
+            int type = rule.type == ParsedRobotsKey.KeyType.ALLOW ? kAllow : kDisallow;
+            Add(type, rule.pattern, rule.line);
+            // The alternative only counts if the pattern does not match, but
+            // then the pattern would have had the higher priority anyway.
+            if (rule.index_alternative != null) {
+                Add(type, rule.index_alternative, rule.line);
+            }
+        }
+    }
+
+    void Match(CharSequence path, RobotsMatchStrategy.Scratch scratch) {
+        long allow = kNoMatch;
+        long disallow = kNoMatch;
+        Node node = root_;
+        int depth = 0;
+        while (true) {
+            allow = Math.max(allow, node.prefix_match[kAllow]);
+            disallow = Math.max(disallow, node.prefix_match[kDisallow]);
+            for (int i = 0; i < node.wildcard_count; ++i) {
+                RobotsPattern pattern = node.wildcards[i];
+                if (pattern.Matches(path, scratch)) {
+                    long match = Pack(pattern.Length(), node.wildcard_lines[i]);
+                    if (node.wildcard_types[i] == kAllow) {
+                        allow = Math.max(allow, match);
+                    } else {
+                        disallow = Math.max(disallow, match);
+                    }
+                }
+            }
+            if (depth == path.length()) {
+                allow = Math.max(allow, node.exact_match[kAllow]);
+                disallow = Math.max(disallow, node.exact_match[kDisallow]);
+                break;
+            }
+            node = node.Child(path.charAt(depth++));
+            if (node == null) {
+                break;
+            }
+        }
+        scratch.allow_match = allow;
+        scratch.disallow_match = disallow;
+    }
+
+    long EstimatedSize() {
+        return CompiledRobots.kObjectHeaderSize
+                + (long) node_count_ * (6 * CompiledRobots.kObjectHeaderSize + 7 * CompiledRobots.kReferenceSize)
+                + (long) wildcard_count_ * (CompiledRobots.kReferenceSize + 8);
+    }
+
+    // Appends the nodes to 'out' in the layout OffHeapRobotsStore matches in
+    // place, see there, root first, and returns the offset of the root.
+    int WriteTo(OffHeapRobotsStore.RegionWriter out) {
+        int root = out.Size();
+        // Nodes to write, each with the slot of its offset in the parent.
+        ArrayDeque<Node> nodes = new ArrayDeque<>();
+        ArrayDeque<Integer> slots = new ArrayDeque<>();
+        nodes.add(root_);
+        slots.add(-1);
+        while (!nodes.isEmpty()) {
+            Node node = nodes.poll();
+            int slot = slots.poll();
+            if (slot >= 0) {
+                out.PatchInt(slot, out.Size());
+            }
+            int mask = 0;
+            for (int type = kAllow; type <= kDisallow; ++type) {
+                mask |= node.prefix_match[type] != kNoMatch ? 1 << type : 0;
+                mask |= node.exact_match[type] != kNoMatch ? 4 << type : 0;
+            }
+            out.PutByte(mask);
+            for (int type = kAllow; type <= kDisallow; ++type) {
+                if (node.prefix_match[type] != kNoMatch) {
+                    out.PutLong(node.prefix_match[type]);
+                }
+            }
+            for (int type = kAllow; type <= kDisallow; ++type) {
+                if (node.exact_match[type] != kNoMatch) {
+                    out.PutLong(node.exact_match[type]);
+                }
+            }
+            out.PutInt(node.wildcard_count);
+            for (int i = 0; i < node.wildcard_count; ++i) {
+                out.PutInt(node.wildcard_lines[i]);
+                out.PutByte(node.wildcard_types[i]);
+                out.PutChars(node.wildcards[i].Text());
+            }
+            out.PutInt(node.labels.length);
+            for (char label : node.labels) {
+                out.PutChar(label);
+            }
+            for (Node child : node.children) {
+                nodes.add(child);
+                slots.add(out.Size());
+                out.PutInt(0);
+            }
+        }
+        return root;
+    }
+
+    private void Add(int type, RobotsPattern pattern, int line) {
+        String literal = pattern.LiteralPrefix();
+        Node node = root_;
+        for (int i = 0; i < literal.length(); ++i) {
+            Node child = node.Child(literal.charAt(i));
+            if (child == null) {
+                child = node.AddChild(literal.charAt(i));
+                ++node_count_;
+            }
+            node = child;
+        }
+        long match = Pack(pattern.Length(), line);
+        switch (pattern.GetKind()) {
+            case PREFIX:
+                node.prefix_match[type] = Math.max(node.prefix_match[type], match);
+                break;
+            case EXACT:
+                node.exact_match[type] = Math.max(node.exact_match[type], match);
+                break;
+            default:
+                node.AddWildcard(type, pattern, line);
+                ++wildcard_count_;
+                break;
+        }
+    }
+
+    private static final class Node {
+        // Sorted, parallel to children.
+        char[] labels = new char[0];
+        Node[] children = new Node[0];
+        // Best matches by type.
+        final long[] prefix_match = {kNoMatch, kNoMatch};
+        final long[] exact_match = {kNoMatch, kNoMatch};
+        RobotsPattern[] wildcards;
+        int[] wildcard_lines;
+        int[] wildcard_types;
+        int wildcard_count;
+
+        Node Child(char label) {
+            int i = Arrays.binarySearch(labels, label);
+            return i >= 0 ? children[i] : null;
+        }
+
+        // 'label' must not have a child yet.
+        Node AddChild(char label) {
+            int i = -Arrays.binarySearch(labels, label) - 1;
+            char[] new_labels = new char[labels.length + 1];
+            Node[] new_children = new Node[children.length + 1];
+            System.arraycopy(labels, 0, new_labels, 0, i);
+            System.arraycopy(children, 0, new_children, 0, i);
+            new_labels[i] = label;
+            new_children[i] = new Node();
+            System.arraycopy(labels, i, new_labels, i + 1, labels.length - i);
+            System.arraycopy(children, i, new_children, i + 1, children.length - i);
+            labels = new_labels;
+            children = new_children;
+            return new_children[i];
+        }
+
+        void AddWildcard(int type, RobotsPattern pattern, int line) {
+            if (wildcards == null) {
+                wildcards = new RobotsPattern[2];
+                wildcard_lines = new int[2];
+                wildcard_types = new int[2];
+            } else if (wildcard_count == wildcards.length) {
+                wildcards = Arrays.copyOf(wildcards, 2 * wildcard_count);
+                wildcard_lines = Arrays.copyOf(wildcard_lines, 2 * wildcard_count);
+                wildcard_types = Arrays.copyOf(wildcard_types, 2 * wildcard_count);
+            }
+            wildcards[wildcard_count] = pattern;
+            wildcard_lines[wildcard_count] = line;
+            wildcard_types[wildcard_count] = type;
+            ++wildcard_count;
+        }
+    }
+}
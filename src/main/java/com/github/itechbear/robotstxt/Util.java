@@ -1,36 +1,57 @@
 package com.github.itechbear.robotstxt;
 
-import java.nio.charset.StandardCharsets;
-import java.util.HashSet;
-import java.util.Set;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
 
 public class Util {
+    // Google only reads the first 500 KiB of a robots.txt.
+    public static final int kMaxRobotsBytes = 500 * 1024;
+    private static final int kStreamBufferSize = 8192;
+
     private static final String kHexDigits = "0123456789ABCDEF";
 
-    private static final Set<Byte> kHexDigitSet = new HashSet<Byte>() {{
-        add((byte) '0');
-        add((byte) '1');
-        add((byte) '2');
-        add((byte) '3');
-        add((byte) '4');
-        add((byte) '5');
-        add((byte) '6');
-        add((byte) '7');
-        add((byte) '8');
-        add((byte) '9');
-        add((byte) 'a');
-        add((byte) 'b');
-        add((byte) 'c');
-        add((byte) 'd');
-        add((byte) 'e');
-        add((byte) 'f');
-        add((byte) 'A');
-        add((byte) 'B');
-        add((byte) 'C');
-        add((byte) 'D');
-        add((byte) 'E');
-        add((byte) 'F');
-    }};
+    // Classes of the ASCII chars, as bits of kCharClasses; chars from 0x80 on
+    // are in none of them.
+    private static final byte kPathDelimiter = 1;       // One of "/?;".
+    private static final byte kHexDigit = 2;
+    private static final byte kEnglishLetter = 4;
+    private static final byte kAgentTokenChar = 8;      // [a-zA-Z_-].
+    private static final byte kJavaWhitespace = 16;     // Character.isWhitespace().
+    private static final byte kLowerHexDigit = 32;      // [a-f].
+    private static final byte[] kCharClasses = new byte[0x80];
+
+    static {
+        for (char c = 0; c < 0x80; ++c) {
+            int classes = 0;
+            if (c == '/' || c == '?' || c == ';') {
+                classes |= kPathDelimiter;
+            }
+            if ((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F')) {
+                classes |= kHexDigit;
+            }
+            if (c >= 'a' && c <= 'f') {
+                classes |= kLowerHexDigit;
+            }
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                classes |= kEnglishLetter | kAgentTokenChar;
+            }
+            if (c == '-' || c == '_') {
+                classes |= kAgentTokenChar;
+            }
+            if (Character.isWhitespace(c)) {
+                classes |= kJavaWhitespace;
+            }
+            kCharClasses[c] = (byte) classes;
+        }
+    }
+
+    private static boolean IsOfClass(char c, byte char_class) {
+        return c < 0x80 && (kCharClasses[c] & char_class) != 0;
+    }
 
     public static boolean StartsWithIgnoreCase(String text, String prefix) {
         if (text.length() < prefix.length()) {
@@ -39,17 +60,40 @@ public class Util {
         return text.substring(0, prefix.length()).equalsIgnoreCase(prefix);
     }
 
+    // Same as above for the text in text[begin, end), without copying it.
+    public static boolean StartsWithIgnoreCase(CharSequence text, int begin, int end, String prefix) {
+        if (end - begin < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); ++i) {
+            char c1 = text.charAt(begin + i);
+            char c2 = prefix.charAt(i);
+            // Same comparison as String.equalsIgnoreCase().
+            if (c1 != c2 && Character.toUpperCase(c1) != Character.toUpperCase(c2)
+                    && Character.toLowerCase(c1) != Character.toLowerCase(c2)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     // for any char of needle, find its first position in the haystack,
     // this is basically equivalent to c++'s string::find_first_of(haystack, needle, start).
     // However, c++'s version can apply to ascii char only, whereas this implementation
     // supports unicode chars.
     public static int FindFirstCharOf(String hayStack, String needle, int start) {
-        Set<Character> set = new HashSet(needle.length());
-        for (char c : needle.toCharArray()) {
-            set.add(c);
-        }
         for (int i = start; i < hayStack.length(); ++i) {
-            if (set.contains(hayStack.charAt(i))) {
+            if (needle.indexOf(hayStack.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Same as FindFirstCharOf(hayStack, "/?;", start).
+    private static int FindPathDelimiter(CharSequence url, int start) {
+        for (int i = start; i < url.length(); ++i) {
+            if (IsOfClass(url.charAt(i), kPathDelimiter)) {
                 return i;
             }
         }
@@ -57,13 +101,35 @@ public class Util {
     }
 
     public static String GetPathParamsQuery(String url) {
+        return PathParamsQuery(url, FindPathParamsQuery(url));
+    }
+
+    // Returns the path of 'url' in 'range', as found by FindPathParamsQuery().
+    static String PathParamsQuery(String url, long range) {
+        int begin = PathBegin(range);
+        int end = PathEnd(range);
+        if (begin == end) {
+            return "/";
+        }
+        if (PathNeedsLeadingSlash(url, range)) {
+            // Prepend a slash if the result would start e.g. with '?'.
+            return "/" + url.substring(begin, end);
+        }
+        return url.substring(begin, end);
+    }
+
+    // Same as GetPathParamsQuery() without copying: returns the range of 'url'
+    // holding the path, packed into a long for PathBegin() and PathEnd(). The
+    // path is the range, after a '/' if PathNeedsLeadingSlash(). For a URL in
+    // UTF-8 bytes, pass a view reading each byte as a char.
+    public static long FindPathParamsQuery(CharSequence url) {
         // Initial two slashes are ignored.
         int search_start = 0;
         if (url.length() >= 2 && url.charAt(0) == '/' && url.charAt(1) == '/') search_start = 2;
 
         // int early_path = url.find_first_of("/?;", search_start);
-        int early_path = FindFirstCharOf(url, "/?;", search_start);
-        int protocol_end = url.indexOf("://", search_start);
+        int early_path = FindPathDelimiter(url, search_start);
+        int protocol_end = IndexOfProtocolEnd(url, search_start);
         if (early_path < protocol_end) {
             // If path, param or query starts before ://, :// doesn't indicate protocol.
             protocol_end = -1;
@@ -75,71 +141,197 @@ public class Util {
         }
 
         // int path_start = url.find_first_of("/?;", protocol_end);
-        int path_start = FindFirstCharOf(url, "/?;", protocol_end);
+        int path_start = FindPathDelimiter(url, protocol_end);
         if (path_start != -1) {
-            int hash_pos = url.indexOf('#', search_start);
-            if (hash_pos >= 0 && hash_pos < path_start) return "/";
+            int hash_pos = IndexOf(url, '#', search_start);
+            if (hash_pos >= 0 && hash_pos < path_start) return PathRange(0, 0);
             int path_end = (hash_pos == -1) ? url.length() : hash_pos;
-            if (url.charAt(path_start) != '/') {
-                // Prepend a slash if the result would start e.g. with '?'.
-                return "/" + url.substring(path_start, path_end);
+            return PathRange(path_start, path_end);
+        }
+
+        return PathRange(0, 0);
+    }
+
+    private static long PathRange(int begin, int end) {
+        return ((long) begin << 32) | end;
+    }
+
+    public static int PathBegin(long range) {
+        return (int) (range >>> 32);
+    }
+
+    public static int PathEnd(long range) {
+        return (int) range;
+    }
+
+    // True if the path in 'range' of 'url' starts with an implied '/': if the
+    // range is empty, or starts e.g. with '?'.
+    public static boolean PathNeedsLeadingSlash(CharSequence url, long range) {
+        int begin = PathBegin(range);
+        return begin == PathEnd(range) || url.charAt(begin) != '/';
+    }
+
+    // Same as url.indexOf("://", from).
+    private static int IndexOfProtocolEnd(CharSequence url, int from) {
+        for (int i = from; i + 2 < url.length(); ++i) {
+            if (url.charAt(i) == ':' && url.charAt(i + 1) == '/' && url.charAt(i + 2) == '/') {
+                return i;
             }
-            return url.substring(path_start, path_end);
         }
+        return -1;
+    }
 
-        return "/";
+    // Same as url.indexOf(ch, from).
+    private static int IndexOf(CharSequence url, char ch, int from) {
+        for (int i = from; i < url.length(); ++i) {
+            if (url.charAt(i) == ch) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     public static boolean IsHexDigit(byte c) {
-        return kHexDigitSet.contains(c);
+        return c >= 0 && (kCharClasses[c] & kHexDigit) != 0;
     }
 
     public static String MaybeEscapePattern(String url) {
-        final byte[] bytes = url.getBytes();
-        int num_to_escape = 0;
-        boolean need_capitalize = false;
-
-        // First, scan the buffer to see if changes are needed. Most don't.
-        for (int i = 0; i < bytes.length; ++i) {
-            // (a) % escape sequence.
-            if (bytes[i] == '%' && IsHexDigit(bytes[i + 1]) && IsHexDigit(bytes[i + 2])) {
-                if (Character.isLowerCase((char) bytes[i + 1]) || Character.isLowerCase((char) bytes[i + 2])) {
-                    need_capitalize = true;
+        StringBuilder dst = new StringBuilder();
+        if (!AppendEscapedPatternIfChanged(url, 0, url.length(), false, dst)) {
+            return url;
+        }
+        return dst.toString();
+    }
+
+    // Same as above, for the UTF-8 encoded pattern in bytes[offset, offset + length).
+    public static String MaybeEscapePattern(byte[] bytes, int offset, int length) {
+        CharSlice url = new CharSlice().Reset(bytes, offset, offset + length);
+        StringBuilder dst = new StringBuilder();
+        if (!AppendEscapedPatternIfChanged(url, 0, length, true, dst)) {
+            // Everything is ASCII here.
+            return url.toString();
+        }
+        return dst.toString();
+    }
+
+    // Normalizes text[begin, end) in a single pass: if MaybeEscapePattern()
+    // would change it, appends the escaped form to 'dst' and returns true;
+    // otherwise leaves 'dst' alone and returns false. The text up to the
+    // first char to change is scanned once and then copied as is. If
+    // 'utf8_bytes', each char of 'text' is a byte of the UTF-8 encoding, as
+    // in a CharSlice over a byte array; otherwise chars are UTF-8 encoded
+    // first, with '?' for unpaired surrogates like String.getBytes().
+    static boolean AppendEscapedPatternIfChanged(CharSequence text, int begin, int end,
+                                                 boolean utf8_bytes, StringBuilder dst) {
+        int i = begin;
+        while (i < end) {
+            char c = text.charAt(i);
+            if (c == '%' && IsEscapeSequence(text, i, end)) {
+                // (a) An escape sequence needs its hex digits in upper case.
+                if (IsOfClass(text.charAt(i + 1), kLowerHexDigit) || IsOfClass(text.charAt(i + 2), kLowerHexDigit)) {
+                    break;
                 }
-                i += 2;
+                i += 3;
+            } else if (c >= 0x80) {
                 // (b) needs escaping.
-            } else if ((bytes[i] & 0x80) != 0) {
-                num_to_escape++;
+                break;
+            } else {
+                // (c) Already escaped and escape-characters normalized (eg. %2f -> %2F).
+                ++i;
             }
-            // (c) Already escaped and escape-characters normalized (eg. %2f -> %2F).
         }
-        // Return if no changes needed.
-        if (num_to_escape == 0 && !need_capitalize) {
-            return new String(bytes, StandardCharsets.UTF_8);
+        if (i == end) {
+            return false;
         }
-        StringBuilder dst = new StringBuilder(num_to_escape * 2 + bytes.length + 1);
-        for (int i = 0; i < bytes.length; i++) {
-            // (a) Normalize %-escaped sequence (eg. %2f -> %2F).
-            if (bytes[i] == '%' && IsHexDigit(bytes[i + 1]) && IsHexDigit(bytes[i + 2])) {
-                dst.append((char) bytes[i]);
-                ++i;
-                dst.append(Character.toUpperCase((char) bytes[i]));
-                ++i;
-                dst.append(Character.toUpperCase((char) bytes[i]));
-            } else if ((bytes[i] & 0x80) != 0) {
-                // (c) Normal character, no modification needed.
-                dst.append('%');
-                dst.append(kHexDigits.charAt((bytes[i] >> 4) & 0xf));
-                dst.append(kHexDigits.charAt(bytes[i] & 0xf));
+        dst.append(text, begin, i);
+        AppendEscapedPattern(text, i, end, utf8_bytes, dst);
+        return true;
+    }
+
+    // Appends the escaped form of text[begin, end) to 'dst', see
+    // AppendEscapedPatternIfChanged().
+    private static void AppendEscapedPattern(CharSequence text, int begin, int end,
+                                             boolean utf8_bytes, StringBuilder dst) {
+        for (int i = begin; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                if (c == '%' && IsEscapeSequence(text, i, end)) {
+                    // (a) Normalize %-escaped sequence (eg. %2f -> %2F).
+                    dst.append(c);
+                    dst.append(ToUpperHexDigit(text.charAt(i + 1)));
+                    dst.append(ToUpperHexDigit(text.charAt(i + 2)));
+                    i += 2;
+                } else {
+                    // (c) Normal character, no modification needed.
+                    dst.append(c);
+                }
+            } else if (utf8_bytes) {
+                AppendEscapedByte(c, dst);
+            } else if (c < 0x800) {
+                AppendEscapedByte(0xC0 | (c >> 6), dst);
+                AppendEscapedByte(0x80 | (c & 0x3F), dst);
+            } else if (!Character.isSurrogate(c)) {
+                AppendEscapedByte(0xE0 | (c >> 12), dst);
+                AppendEscapedByte(0x80 | ((c >> 6) & 0x3F), dst);
+                AppendEscapedByte(0x80 | (c & 0x3F), dst);
+            } else if (Character.isHighSurrogate(c) && i + 1 < end
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int code_point = Character.toCodePoint(c, text.charAt(++i));
+                AppendEscapedByte(0xF0 | (code_point >> 18), dst);
+                AppendEscapedByte(0x80 | ((code_point >> 12) & 0x3F), dst);
+                AppendEscapedByte(0x80 | ((code_point >> 6) & 0x3F), dst);
+                AppendEscapedByte(0x80 | (code_point & 0x3F), dst);
             } else {
-                dst.append((char) bytes[i]);
+                dst.append('?');
             }
         }
-        return dst.toString();
+    }
+
+    // 'c' must be a hex digit.
+    private static char ToUpperHexDigit(char c) {
+        return IsOfClass(c, kLowerHexDigit) ? (char) (c - ('a' - 'A')) : c;
+    }
+
+    private static void AppendEscapedByte(int b, StringBuilder dst) {
+        dst.append('%');
+        dst.append(kHexDigits.charAt((b >> 4) & 0xf));
+        dst.append(kHexDigits.charAt(b & 0xf));
+    }
+
+    private static boolean IsEscapeSequence(CharSequence text, int i, int end) {
+        return text.charAt(i) == '%' && i + 2 < end
+                && IsHexDigit(text.charAt(i + 1)) && IsHexDigit(text.charAt(i + 2));
+    }
+
+    private static boolean IsHexDigit(char c) {
+        return IsOfClass(c, kHexDigit);
     }
 
     public static boolean isEnglishLetter(char c) {
-        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        return IsOfClass(c, kEnglishLetter);
+    }
+
+    // Returns the length of the user-agent token 'user_agent' starts with,
+    // see RobotsMatcher.ExtractUserAgent().
+    static int AgentTokenLength(CharSequence user_agent) {
+        int length = 0;
+        while (length < user_agent.length() && IsOfClass(user_agent.charAt(length), kAgentTokenChar)) {
+            ++length;
+        }
+        return length;
+    }
+
+    // True for the global agent '*', also when followed by whitespace and
+    // more characters, as Google regards it.
+    static boolean IsGlobalAgent(CharSequence user_agent) {
+        if (user_agent.charAt(0) != '*') {
+            return false;
+        }
+        if (user_agent.length() == 1) {
+            return true;
+        }
+        char c = user_agent.charAt(1);
+        return c < 0x80 ? (kCharClasses[c] & kJavaWhitespace) != 0 : Character.isWhitespace(c);
     }
 
     public static void EmitKeyValueToHandler(int line,
@@ -171,4 +363,122 @@ public class Util {
         RobotsTxtParser parser = new RobotsTxtParser(robots_body, parse_callback);
         parser.Parse();
     }
+
+    // Same as above, handing the keys and values to 'parse_callback' as views
+    // instead of copies.
+    public static void ParseRobotsTxt(CharSequence robots_body,
+                                      RobotsParseSliceHandler parse_callback) {
+        RobotsTxtParser parser = new RobotsTxtParser(robots_body, parse_callback);
+        parser.Parse();
+    }
+
+    // Same as ParseRobotsTxt(robots_body, parse_callback), except that allow and
+    // disallow lines are only handed over in groups for the global agent '*' or
+    // one of 'user_agents', with groups delimited as by RobotsMatcher. Lines of
+    // other groups are skipped without escaping their values, which saves most
+    // of the work on files with many groups for other crawlers.
+    public static void ParseRobotsTxt(String robots_body,
+                                      RobotsParseHandler parse_callback,
+                                      List<String> user_agents) {
+        ParseRobotsTxt(robots_body, new RobotsParseHandlerAdapter(parse_callback), user_agents);
+    }
+
+    public static void ParseRobotsTxt(CharSequence robots_body,
+                                      RobotsParseSliceHandler parse_callback,
+                                      List<String> user_agents) {
+        RobotsTxtParser parser = new RobotsTxtParser(robots_body, parse_callback);
+        parser.SetAgentFilter(user_agents);
+        parser.Parse();
+    }
+
+    // Parses the UTF-8 encoded robots.txt in 'robots_body' without decoding it
+    // first.
+    public static void ParseRobotsTxt(byte[] robots_body,
+                                      RobotsParseHandler parse_callback) {
+        ParseRobotsTxt(robots_body, new RobotsParseHandlerAdapter(parse_callback));
+    }
+
+    public static void ParseRobotsTxt(byte[] robots_body,
+                                      RobotsParseSliceHandler parse_callback) {
+        RobotsTxtParser parser = new RobotsTxtParser(robots_body, 0, robots_body.length, parse_callback);
+        parser.Parse();
+    }
+
+    // Parses the remaining bytes of 'robots_body', leaving its position as is.
+    // Buffers without an accessible array, e.g. direct ones, are copied first.
+    public static void ParseRobotsTxt(ByteBuffer robots_body,
+                                      RobotsParseHandler parse_callback) {
+        ParseRobotsTxt(robots_body, new RobotsParseHandlerAdapter(parse_callback));
+    }
+
+    public static void ParseRobotsTxt(ByteBuffer robots_body,
+                                      RobotsParseSliceHandler parse_callback) {
+        RobotsTxtParser parser;
+        if (robots_body.hasArray()) {
+            parser = new RobotsTxtParser(robots_body.array(),
+                    robots_body.arrayOffset() + robots_body.position(), robots_body.remaining(),
+                    parse_callback);
+        } else {
+            byte[] bytes = new byte[robots_body.remaining()];
+            robots_body.duplicate().get(bytes);
+            parser = new RobotsTxtParser(bytes, 0, bytes.length, parse_callback);
+        }
+        parser.Parse();
+    }
+
+    // Reads and parses the UTF-8 encoded robots.txt from 'robots_body' through
+    // a small fixed buffer, so that only the current line is kept in memory,
+    // and stops after the first kMaxRobotsBytes bytes. Does not close
+    // 'robots_body'.
+    public static void ParseRobotsTxt(InputStream robots_body,
+                                      RobotsParseHandler parse_callback) throws IOException {
+        ParseRobotsTxt(robots_body, kMaxRobotsBytes, new RobotsParseHandlerAdapter(parse_callback));
+    }
+
+    public static void ParseRobotsTxt(InputStream robots_body,
+                                      RobotsParseSliceHandler parse_callback) throws IOException {
+        ParseRobotsTxt(robots_body, kMaxRobotsBytes, parse_callback);
+    }
+
+    // Same as above, stopping after the first 'max_bytes' bytes.
+    public static void ParseRobotsTxt(InputStream robots_body, long max_bytes,
+                                      RobotsParseSliceHandler parse_callback) throws IOException {
+        IncrementalRobotsTxtParser parser = new IncrementalRobotsTxtParser(parse_callback, max_bytes);
+        byte[] buffer = new byte[kStreamBufferSize];
+        while (parser.RemainingBytes() > 0) {
+            int read = robots_body.read(buffer, 0, (int) Math.min(buffer.length, parser.RemainingBytes()));
+            if (read < 0) {
+                break;
+            }
+            parser.Feed(buffer, 0, read);
+        }
+        parser.Finish();
+    }
+
+    // Same as the InputStream versions, for a channel in blocking mode.
+    public static void ParseRobotsTxt(ReadableByteChannel robots_body,
+                                      RobotsParseHandler parse_callback) throws IOException {
+        ParseRobotsTxt(robots_body, kMaxRobotsBytes, new RobotsParseHandlerAdapter(parse_callback));
+    }
+
+    public static void ParseRobotsTxt(ReadableByteChannel robots_body,
+                                      RobotsParseSliceHandler parse_callback) throws IOException {
+        ParseRobotsTxt(robots_body, kMaxRobotsBytes, parse_callback);
+    }
+
+    public static void ParseRobotsTxt(ReadableByteChannel robots_body, long max_bytes,
+                                      RobotsParseSliceHandler parse_callback) throws IOException {
+        IncrementalRobotsTxtParser parser = new IncrementalRobotsTxtParser(parse_callback, max_bytes);
+        ByteBuffer buffer = ByteBuffer.allocate(kStreamBufferSize);
+        while (parser.RemainingBytes() > 0) {
+            // Buffer's own methods, which Java 8 has; see RobotsTxtParser.Decode().
+            ((Buffer) buffer).clear().limit((int) Math.min(buffer.capacity(), parser.RemainingBytes()));
+            if (robots_body.read(buffer) < 0) {
+                break;
+            }
+            ((Buffer) buffer).flip();
+            parser.Feed(buffer);
+        }
+        parser.Finish();
+    }
 }
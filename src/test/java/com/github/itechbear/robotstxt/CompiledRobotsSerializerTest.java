@@ -0,0 +1,82 @@
+package com.github.itechbear.robotstxt;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+class CompiledRobotsSerializerTest {
+    private static final String kRobotsTxt =
+            "sitemap: http://foo.bar/sitemap.xml\n" +
+                    "user-agent: FooBot\n" +
+                    "user-agent: BarBot\n" +
+                    "disallow: /\n" +
+                    "allow: /x/index.html\n" +
+                    "\n" +
+                    "\n" +
+                    "allow: /ツ/*.php$\n" +
+                    "user-agent: *\n" +
+                    "user-agent: BazBot\n" +
+                    "disallow: /private/\n" +
+                    "sitemap: http://foo.bar/ツ.xml\n";
+
+    private static final String[] kUrls = {
+            "http://foo.bar/", "http://foo.bar/x/", "http://foo.bar/x/index.html", "http://foo.bar/private/a",
+            "http://foo.bar/%E3%83%84/a.php", "http://foo.bar/%E3%83%84/a.php?x",
+    };
+
+    private static void CheckSame(CompiledRobots expected, CompiledRobots robots) {
+        for (List<String> agents : Arrays.asList(Collections.singletonList("FooBot"),
+                Collections.singletonList("bazbot"), Collections.singletonList("QuxBot"))) {
+            for (String url : kUrls) {
+                Assertions.assertEquals(expected.AllowedByRobots(agents, url), robots.AllowedByRobots(agents, url),
+                        agents + " " + url);
+            }
+        }
+        Assertions.assertEquals(expected.Sitemaps(), robots.Sitemaps());
+    }
+
+    @Test
+    public void RoundTrip() {
+        CompiledRobots robots = CompiledRobots.Compile(kRobotsTxt);
+        Assertions.assertEquals(Arrays.asList("http://foo.bar/sitemap.xml", "http://foo.bar/ツ.xml"),
+                robots.Sitemaps());
+        byte[] bytes = CompiledRobotsSerializer.Serialize(robots);
+        CompiledRobots loaded = CompiledRobotsSerializer.Deserialize(ByteBuffer.wrap(bytes));
+        CheckSame(robots, loaded);
+        Assertions.assertEquals(robots.EstimatedSize(), loaded.EstimatedSize());
+
+        // Several rule sets back to back, in a direct buffer.
+        CompiledRobots empty = CompiledRobots.Compile("");
+        ByteBuffer direct = ByteBuffer.allocateDirect(2 * bytes.length + 16);
+        CompiledRobotsSerializer.Serialize(robots, direct);
+        CompiledRobotsSerializer.Serialize(empty, direct);
+        CompiledRobotsSerializer.Serialize(robots, direct);
+        direct.flip();
+        CheckSame(robots, CompiledRobotsSerializer.Deserialize(direct));
+        CheckSame(empty, CompiledRobotsSerializer.Deserialize(direct));
+        CheckSame(robots, CompiledRobotsSerializer.Deserialize(direct, CompiledRobots.Engine.AUTOMATON));
+        Assertions.assertFalse(direct.hasRemaining());
+    }
+
+    @Test
+    public void RejectsBadInput() {
+        byte[] bytes = CompiledRobotsSerializer.Serialize(CompiledRobots.Compile(kRobotsTxt));
+        Assertions.assertThrows(BufferUnderflowException.class,
+                () -> CompiledRobotsSerializer.Deserialize(ByteBuffer.wrap(bytes, 0, bytes.length - 1)));
+        byte[] bad_version = bytes.clone();
+        bad_version[4] = 2;
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> CompiledRobotsSerializer.Deserialize(ByteBuffer.wrap(bad_version)));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> CompiledRobotsSerializer.Deserialize(ByteBuffer.wrap("user-agent: *".getBytes())));
+        // A group count of 2^31 - 1 with nothing after it.
+        byte[] huge_count = {'R', 'T', 'X', 'T', 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        Assertions.assertThrows(BufferUnderflowException.class,
+                () -> CompiledRobotsSerializer.Deserialize(ByteBuffer.wrap(huge_count)));
+    }
+}
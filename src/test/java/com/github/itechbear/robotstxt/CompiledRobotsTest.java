@@ -0,0 +1,319 @@
+package com.github.itechbear.robotstxt;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class CompiledRobotsTest {
+    private static final String kRobotsTxt =
+            "allow: /foo/bar/\n" +
+                    "\n" +
+                    "user-agent: FooBot\n" +
+                    "disallow: /\n" +
+                    "allow: /x/\n" +
+                    "user-agent: BarBot\n" +
+                    "disallow: /\n" +
+                    "allow: /y/\n" +
+                    "\n" +
+                    "\n" +
+                    "allow: /w/\n" +
+                    "user-agent: BazBot\n" +
+                    "\n" +
+                    "user-agent: FooBot\n" +
+                    "allow: /z/\n" +
+                    "disallow: /\n" +
+                    "user-agent: *\n" +
+                    "disallow: /private/\n" +
+                    "allow: /index.html\n" +
+                    "disallow: /\n";
+
+    private static final String[] kUrls = {
+            "http://foo.bar/",
+            "http://foo.bar/w/a",
+            "http://foo.bar/x/b",
+            "http://foo.bar/y/c",
+            "http://foo.bar/z/d",
+            "http://foo.bar/foo/bar/",
+            "http://foo.bar/private/a",
+            "http://foo.bar/public",
+            "",
+    };
+
+    private static final List<List<String>> kAgents = Arrays.asList(
+            Arrays.asList("FooBot"),
+            Arrays.asList("BarBot"),
+            Arrays.asList("BazBot"),
+            Arrays.asList("QuxBot"),
+            Arrays.asList("FooBot", "BarBot"),
+            Arrays.asList("barbot", "QuxBot"),
+            Arrays.asList(""));
+
+    // One compiled object answers every check the same way as a fresh parse.
+    @Test
+    public void MatchesRobotsMatcher() {
+        CompiledRobots compiled = CompiledRobots.Compile(kRobotsTxt);
+        for (List<String> agents : kAgents) {
+            for (String url : kUrls) {
+                boolean expected = new RobotsMatcher().AllowedByRobots(kRobotsTxt, agents, url);
+                Assertions.assertEquals(expected, compiled.AllowedByRobots(agents, url),
+                        agents + " " + url);
+            }
+        }
+    }
+
+    // Urls given as views or UTF-8 bytes are checked like Strings.
+    @Test
+    public void UrlViewsMatchStrings() {
+        CompiledRobots compiled = CompiledRobots.Compile(kRobotsTxt);
+        for (List<String> agents : kAgents) {
+            for (String url : kUrls) {
+                boolean expected = compiled.AllowedByRobots(agents, url);
+                Assertions.assertEquals(expected, compiled.AllowedByRobots(agents, new StringBuilder(url)));
+                byte[] bytes = ("xx" + url).getBytes(StandardCharsets.UTF_8);
+                Assertions.assertEquals(expected, compiled.AllowedByRobots(agents, bytes, 2, bytes.length - 2),
+                        agents + " " + url);
+            }
+        }
+    }
+
+    // A batch check answers like checking the URLs one by one, also for URLs
+    // whose paths only differ in the implied leading slash.
+    @Test
+    public void BatchMatchesSingleChecks() {
+        CompiledRobots compiled = CompiledRobots.Compile(kRobotsTxt + "allow: /?q\n");
+        List<String> urls = new ArrayList<>(Arrays.asList(kUrls));
+        urls.addAll(Arrays.asList("http://foo.bar/x/b#frag", "http://foo.bar?q", "http://foo.bar/?q",
+                "//foo.bar/private/a", "http://foo.bar#/x/", "http://foo.bar/x/b", "/w/a"));
+        for (List<String> agents : kAgents) {
+            boolean[] allowed = compiled.AllowedByRobots(agents, urls);
+            Assertions.assertEquals(urls.size(), allowed.length);
+            for (int i = 0; i < urls.size(); ++i) {
+                Assertions.assertEquals(compiled.AllowedByRobots(agents, urls.get(i)), allowed[i],
+                        agents + " " + urls.get(i));
+            }
+        }
+        Assertions.assertEquals(0, compiled.AllowedByRobots(kAgents.get(0), new ArrayList<>()).length);
+    }
+
+    // Every agent gets the verdict and matching line of checking it alone.
+    @Test
+    public void PerAgentMatchesRobotsMatcher() {
+        String robots_txt = kRobotsTxt + "user-agent: FOOBOT\nuser-agent: *\ndisallow: /w/\n";
+        CompiledRobots compiled = CompiledRobots.Compile(robots_txt);
+        List<String> agents = Arrays.asList("FooBot", "BarBot", "BazBot", "QuxBot", "barbot", "", "\u212aBot");
+        for (String url : kUrls) {
+            CompiledRobots.Verdict[] verdicts = compiled.PerAgentAllowedByRobots(agents, url);
+            Assertions.assertEquals(agents.size(), verdicts.length);
+            for (int i = 0; i < agents.size(); ++i) {
+                RobotsMatcher matcher = new RobotsMatcher();
+                boolean allowed = matcher.OneAgentAllowedByRobots(robots_txt, agents.get(i), url);
+                Assertions.assertEquals(agents.get(i), verdicts[i].user_agent());
+                Assertions.assertEquals(allowed, verdicts[i].allowed(), agents.get(i) + " " + url);
+                Assertions.assertEquals(matcher.MatchingLine(), verdicts[i].matching_line(), agents.get(i) + " " + url);
+                Assertions.assertEquals(matcher.ever_seen_specific_agent(), verdicts[i].ever_seen_specific_agent());
+            }
+        }
+    }
+
+    // Duplicate and shadowed rules, and groups repeating agents, are minimized
+    // away without changing verdicts or matching lines.
+    @Test
+    public void MinimizedRulesMatchRobotsMatcher() {
+        String robots_txt = "user-agent: FooBot\n" +
+                "disallow: /x/\n" +
+                "disallow: /y\n" +
+                "disallow: /x/\n" +
+                "allow: /y\n" +
+                "allow: /z/index.html\n" +
+                "user-agent: BarBot\n" +
+                "disallow: /x/\n" +
+                "user-agent: foobot\n" +
+                "disallow: /y\n" +
+                "disallow: /w\n" +
+                "user-agent: *\n" +
+                "disallow: /\n" +
+                "user-agent: *\n" +
+                "disallow: /\n" +
+                "allow: /x/a\n" +
+                "disallow: /x/a\n";
+        CompiledRobots compiled = CompiledRobots.Compile(robots_txt);
+        Assertions.assertEquals(5, compiled.EliminatedRuleCount());
+        Assertions.assertEquals(2, compiled.MergedGroupCount());
+        Assertions.assertEquals(7, compiled.RuleCount());
+
+        List<String> agents = Arrays.asList("FooBot", "BarBot", "QuxBot");
+        String[] urls = {"http://foo.bar/", "http://foo.bar/x/a", "http://foo.bar/y", "http://foo.bar/w",
+                "http://foo.bar/z/", "http://foo.bar/z/index.html"};
+        for (CompiledRobots.Engine engine : CompiledRobots.Engine.values()) {
+            CompiledRobots robots = CompiledRobots.Compile(robots_txt, engine);
+            for (String url : urls) {
+                CompiledRobots.Verdict[] verdicts = robots.PerAgentAllowedByRobots(agents, url);
+                for (int i = 0; i < agents.size(); ++i) {
+                    RobotsMatcher matcher = new RobotsMatcher();
+                    boolean allowed = matcher.OneAgentAllowedByRobots(robots_txt, agents.get(i), url);
+                    Assertions.assertEquals(allowed, verdicts[i].allowed(), agents.get(i) + " " + url);
+                    Assertions.assertEquals(matcher.MatchingLine(), verdicts[i].matching_line(),
+                            agents.get(i) + " " + url);
+                }
+            }
+        }
+    }
+
+    // A group adding an empty token, as "user-agent: *x" gives, names other
+    // agents than a group for '*' alone and is not merged into it.
+    @Test
+    public void EmptyAgentTokenIsNotMerged() {
+        String robots_txt = "user-agent: *\ndisallow: /b\nuser-agent: *\nuser-agent: *x\n";
+        String url = "http://x/b";
+        RobotsMatcher matcher = new RobotsMatcher();
+        boolean allowed = matcher.OneAgentAllowedByRobots(robots_txt, "", url);
+        Assertions.assertTrue(allowed);
+        for (CompiledRobots.Engine engine : CompiledRobots.Engine.values()) {
+            CompiledRobots robots = CompiledRobots.Compile(robots_txt, engine);
+            Assertions.assertEquals(0, robots.MergedGroupCount());
+            CompiledRobots.Verdict verdict = robots.PerAgentAllowedByRobots(Arrays.asList(""), url)[0];
+            Assertions.assertEquals(allowed, verdict.allowed(), engine.toString());
+            Assertions.assertEquals(matcher.MatchingLine(), verdict.matching_line(), engine.toString());
+
+            byte[] serialized = CompiledRobotsSerializer.Serialize(robots);
+            Assertions.assertEquals(allowed, CompiledRobotsSerializer.Deserialize(ByteBuffer.wrap(serialized))
+                    .OneAgentAllowedByRobots("", url));
+            OffHeapRobotsStore store = new OffHeapRobotsStore(1024);
+            store.Put("x", serialized);
+            Assertions.assertEquals(allowed, store.OneAgentAllowedByRobots("x", "", url));
+        }
+    }
+
+    // A builder reused across bodies shares the patterns of repeated rules,
+    // with the same verdicts as without the cache.
+    @Test
+    public void PatternCacheSharesRepeatedPatterns() {
+        CompiledRobotsBuilder builder = new CompiledRobotsBuilder();
+        builder.SetPatternCacheSize(16);
+        Util.ParseRobotsTxt(kRobotsTxt, builder);
+        CompiledRobots first = builder.Build();
+        Util.ParseRobotsTxt(kRobotsTxt + "user-agent: QuxBot\nallow: /x/\ndisallow: /café\n", builder);
+        CompiledRobots second = builder.Build();
+        Assertions.assertTrue(builder.GetPatternCache().HitCount() > 0);
+        Assertions.assertSame(first.Groups()[0].rules[0].pattern, second.Groups()[0].rules[0].pattern);
+        Assertions.assertEquals("/caf%C3%A9",
+                second.Groups()[second.Groups().length - 1].rules[1].pattern.Text());
+
+        for (CompiledRobots robots : new CompiledRobots[]{first, second}) {
+            CompiledRobots uncached = CompiledRobots.Compile(robots == first
+                    ? kRobotsTxt : kRobotsTxt + "user-agent: QuxBot\nallow: /x/\ndisallow: /café\n");
+            for (List<String> agents : kAgents) {
+                for (String url : kUrls) {
+                    Assertions.assertEquals(uncached.AllowedByRobots(agents, url), robots.AllowedByRobots(agents, url),
+                            agents + " " + url);
+                }
+            }
+        }
+    }
+
+    // Agents are looked up by the same case folding as equalsIgnoreCase().
+    @Test
+    public void FoldCaseMatchesEqualsIgnoreCase() {
+        String[] agents = {"FooBot", "foobot", "FOOBOT", "\u212aBot", "kbot", "\u0130bot", "ibot", "\u0131bot", ""};
+        for (String a : agents) {
+            for (String b : agents) {
+                Assertions.assertEquals(a.equalsIgnoreCase(b),
+                        CompiledRobots.FoldCase(a).equals(CompiledRobots.FoldCase(b)), a + " " + b);
+            }
+        }
+    }
+
+    @Test
+    public void EmptyRobotsAllowsEverything() {
+        CompiledRobots compiled = CompiledRobots.Compile("");
+        Assertions.assertTrue(compiled.OneAgentAllowedByRobots("FooBot", "http://foo.bar/x"));
+        Assertions.assertTrue(compiled.OneAgentAllowedByRobots("", ""));
+        Assertions.assertSame(compiled, CompiledRobots.Compile("# nothing\n\nfoo: bar\n"));
+    }
+
+    // Trivial rule sets are answered without matching, with the same verdicts.
+    @Test
+    public void ConstantVerdictsMatchRobotsMatcher() {
+        String[] bodies = {
+                "user-agent: *\ndisallow:\n",
+                "user-agent: *\ndisallow: /\n",
+                "user-agent: *\ndisallow: /*\ndisallow: /x/\nallow:\n",
+                "user-agent: *\ndisallow: *\nuser-agent: FooBot\ndisallow:\n",
+                "user-agent: *\ndisallow:\nuser-agent: FooBot\ndisallow: /\n",
+                "user-agent: FooBot\ndisallow: /\nuser-agent: FooBot\nallow: /x/\n",
+                "user-agent: BarBot\ndisallow: /\nuser-agent: *\nuser-agent: FooBot\ndisallow: /$\n",
+                "user-agent: *\ndisallow: /\nallow: /index.html\n",
+        };
+        for (String body : bodies) {
+            CompiledRobots compiled = CompiledRobots.Compile(body);
+            for (List<String> agents : kAgents) {
+                for (String url : kUrls) {
+                    boolean expected = new RobotsMatcher().AllowedByRobots(body, agents, url);
+                    Assertions.assertEquals(expected, compiled.AllowedByRobots(agents, url),
+                            body + agents + " " + url);
+                }
+                boolean[] allowed = compiled.AllowedByRobots(agents, Arrays.asList(kUrls));
+                for (int i = 0; i < kUrls.length; ++i) {
+                    Assertions.assertEquals(compiled.AllowedByRobots(agents, kUrls[i]), allowed[i]);
+                }
+            }
+        }
+    }
+
+    // A caller-owned scratch is reused across checks of long paths.
+    @Test
+    public void CallerOwnedScratch() {
+        CompiledRobots compiled = CompiledRobots.Compile(
+                "user-agent: FooBot\n" +
+                        "disallow: /*bc*a$\n" +
+                        "allow: /*b*c\n");
+        RobotsMatchStrategy.Scratch scratch = new RobotsMatchStrategy.Scratch();
+        StringBuilder path = new StringBuilder("http://foo.bar/");
+        for (int i = 0; i < 1000; ++i) {
+            path.append("bc");
+        }
+        List<String> agents = Arrays.asList("FooBot");
+        Assertions.assertTrue(compiled.AllowedByRobots(agents, path.toString(), scratch));
+        Assertions.assertFalse(compiled.AllowedByRobots(agents, path + "a", scratch));
+        Assertions.assertFalse(compiled.AllowedByRobots(agents, "http://foo.bar/bca", scratch));
+        Assertions.assertTrue(compiled.AllowedByRobots(agents, "http://foo.bar/a", scratch));
+    }
+
+    // A single instance is shared by concurrent checks without any locking.
+    @Test
+    public void SharedAcrossThreads() throws Exception {
+        CompiledRobots compiled = CompiledRobots.Compile(kRobotsTxt);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 64; ++i) {
+                results.add(executor.submit(() -> {
+                    for (int round = 0; round < 200; ++round) {
+                        for (List<String> agents : kAgents) {
+                            for (String url : kUrls) {
+                                boolean expected = new RobotsMatcher().AllowedByRobots(kRobotsTxt, agents, url);
+                                if (expected != compiled.AllowedByRobots(agents, url)) {
+                                    return false;
+                                }
+                            }
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                Assertions.assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
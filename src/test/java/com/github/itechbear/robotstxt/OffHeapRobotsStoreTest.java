@@ -0,0 +1,135 @@
+package com.github.itechbear.robotstxt;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+class OffHeapRobotsStoreTest {
+    private static final String kRobotsTxt =
+            "user-agent: FooBot\n" +
+                    "user-agent: BarBot\n" +
+                    "disallow: /\n" +
+                    "allow: /x/index.html\n" +
+                    "allow: /*.php$\n" +
+                    "user-agent: *\n" +
+                    "disallow: /private/\n" +
+                    "sitemap: http://foo.bar/sitemap.xml\n";
+
+    private static final String[] kUrls = {
+            "http://foo.bar/", "http://foo.bar/x/", "http://foo.bar/x/index.html", "http://foo.bar/private/a",
+            "http://foo.bar/a.php", "http://foo.bar/a.php?x",
+    };
+
+    private static final List<List<String>> kAgents = Arrays.asList(
+            Arrays.asList("FooBot"), Arrays.asList("barbot"), Arrays.asList("QuxBot"),
+            Arrays.asList("QuxBot", "BARBOT"), Arrays.asList(""));
+
+    @Test
+    public void MatchesCompiledRobots() {
+        OffHeapRobotsStore store = new OffHeapRobotsStore(256);
+        CompiledRobots compiled = CompiledRobots.Compile(kRobotsTxt);
+        for (int i = 0; i < 100; ++i) {
+            store.Put("host" + i, i % 2 == 0 ? compiled : CompiledRobots.Compile(""));
+        }
+        Assertions.assertEquals(100, store.Size());
+        for (List<String> agents : kAgents) {
+            for (String url : kUrls) {
+                Assertions.assertEquals(compiled.AllowedByRobots(agents, url),
+                        store.AllowedByRobots("host42", agents, url), agents + " " + url);
+                Assertions.assertTrue(store.AllowedByRobots("host43", agents, url));
+            }
+        }
+        Assertions.assertEquals(compiled.Sitemaps(), store.Get("host42").Sitemaps());
+        Assertions.assertNull(store.Get("unknown"));
+        Assertions.assertTrue(store.OneAgentAllowedByRobots("unknown", "FooBot", "http://foo.bar/"));
+    }
+
+    @Test
+    public void ReplacedRegionsAreGarbage() {
+        OffHeapRobotsStore store = new OffHeapRobotsStore(1 << 16);
+        store.Put("foo.bar", CompiledRobots.Compile(kRobotsTxt));
+        Assertions.assertEquals(1 << 16, store.CapacityBytes());
+        Assertions.assertEquals(0, store.GarbageBytes());
+        byte[] replacement = CompiledRobotsSerializer.Serialize(CompiledRobots.Compile("user-agent: *\ndisallow: /\n"));
+        store.Put("foo.bar", replacement);
+        Assertions.assertTrue(store.GarbageBytes() > 0);
+        Assertions.assertFalse(store.OneAgentAllowedByRobots("foo.bar", "FooBot", "http://foo.bar/"));
+        long garbage = store.GarbageBytes();
+        store.Remove("foo.bar");
+        long removed = store.GarbageBytes() - garbage;
+        // The region holds the serialized rules and their index.
+        Assertions.assertTrue(removed > 4 + replacement.length);
+        Assertions.assertFalse(store.Contains("foo.bar"));
+        store.Put("foo.bar", replacement);
+        store.Put("foo.bar", replacement);
+        Assertions.assertEquals(garbage + 2 * removed, store.GarbageBytes());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> store.Put("foo.bar", new byte[]{1, 2}));
+    }
+
+    // Every cut of valid rules, and bytes after them, are rejected before
+    // anything is stored.
+    @Test
+    public void RejectsMalformedRules() {
+        OffHeapRobotsStore store = new OffHeapRobotsStore(1 << 16);
+        byte[] serialized = CompiledRobotsSerializer.Serialize(CompiledRobots.Compile(kRobotsTxt));
+        for (int length = 0; length < serialized.length; ++length) {
+            byte[] truncated = Arrays.copyOf(serialized, length);
+            Assertions.assertThrows(IllegalArgumentException.class, () -> store.Put("foo.bar", truncated));
+        }
+        byte[] trailing = Arrays.copyOf(serialized, serialized.length + 1);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> store.Put("foo.bar", trailing));
+        // A group count far beyond the bytes present.
+        byte[] huge_count = Arrays.copyOf(serialized, CompiledRobotsSerializer.kMagic.length + 6);
+        huge_count[CompiledRobotsSerializer.kMagic.length + 1] = (byte) 0xFF;
+        huge_count[CompiledRobotsSerializer.kMagic.length + 2] = (byte) 0xFF;
+        huge_count[CompiledRobotsSerializer.kMagic.length + 3] = (byte) 0xFF;
+        huge_count[CompiledRobotsSerializer.kMagic.length + 4] = (byte) 0xFF;
+        huge_count[CompiledRobotsSerializer.kMagic.length + 5] = 0x07;
+        Assertions.assertThrows(IllegalArgumentException.class, () -> store.Put("foo.bar", huge_count));
+        Assertions.assertEquals(0, store.Size());
+        Assertions.assertEquals(0, store.CapacityBytes());
+
+        store.Put("foo.bar", serialized);
+        Assertions.assertTrue(store.Contains("foo.bar"));
+    }
+
+    // Generated bodies with many rules, wildcards, '$', index.html rules and
+    // groups of constant verdicts answer like RobotsMatcher.
+    @Test
+    public void MatchesRobotsMatcherOnGeneratedBodies() {
+        String[] agents = {"FooBot", "BarBot", "*", "*x"};
+        String[] segments = {"", "/", "/a", "/ab", "/b", "*", "$", "/index.html", "/a*b", "?q=", "/%2F"};
+        String[] paths = {"/", "/a", "/ab", "/abc", "/a/b", "/b", "/b/", "/index.html", "/a/index.html",
+                "/ab?q=1", "/%2F", "/x"};
+        Random random = new Random(42);
+        OffHeapRobotsStore store = new OffHeapRobotsStore(1 << 16);
+        for (int round = 0; round < 300; ++round) {
+            StringBuilder body = new StringBuilder();
+            int group_count = 1 + random.nextInt(4);
+            for (int g = 0; g < group_count; ++g) {
+                body.append("user-agent: ").append(agents[random.nextInt(agents.length)]).append('\n');
+                int rule_count = random.nextInt(4) == 0 ? 20 : random.nextInt(4);
+                for (int r = 0; r < rule_count; ++r) {
+                    body.append(random.nextInt(3) == 0 ? "allow: " : "disallow: ");
+                    for (int k = random.nextInt(3); k >= 0; --k) {
+                        body.append(segments[random.nextInt(segments.length)]);
+                    }
+                    body.append('\n');
+                }
+            }
+            String robots_txt = body.toString();
+            store.Put("host", CompiledRobots.Compile(robots_txt));
+            for (String agent : new String[]{"FooBot", "QuxBot", ""}) {
+                for (String path : paths) {
+                    String url = "http://foo.bar" + path;
+                    Assertions.assertEquals(new RobotsMatcher().OneAgentAllowedByRobots(robots_txt, agent, url),
+                            store.OneAgentAllowedByRobots("host", agent, url), robots_txt + agent + " " + url);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.itechbear.robotstxt;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+class RobotsBulkCompilerTest {
+    private static final String[] kUrls = {"http://x/", "http://x/a/b", "http://x/b", "http://x/c?d"};
+
+    private static Map<String, String> Bodies() {
+        Map<String, String> bodies = new LinkedHashMap<>();
+        for (int i = 0; i < 300; ++i) {
+            StringBuilder body = new StringBuilder("user-agent: FooBot\n");
+            for (int j = 0; j < i % 7; ++j) {
+                body.append(j % 2 == 0 ? "disallow: /" : "allow: /").append((char) ('a' + j)).append('\n');
+            }
+            bodies.put("host" + i + ".com", body.toString());
+        }
+        bodies.put("empty.com", "");
+        return bodies;
+    }
+
+    private static void CheckResult(Map<String, String> bodies, RobotsBulkCompiler.Result result) {
+        Assertions.assertEquals(bodies.size(), result.FileCount());
+        Assertions.assertEquals(0, result.FailureCount());
+        Assertions.assertEquals(bodies.size(), result.Robots().size());
+        long bytes = 0;
+        for (Map.Entry<String, String> entry : bodies.entrySet()) {
+            bytes += entry.getValue().length();
+            CompiledRobots expected = CompiledRobots.Compile(entry.getValue());
+            CompiledRobots robots = result.Robots().get(entry.getKey());
+            for (String url : kUrls) {
+                Assertions.assertEquals(expected.OneAgentAllowedByRobots("FooBot", url),
+                        robots.OneAgentAllowedByRobots("FooBot", url), entry.getKey() + " " + url);
+            }
+        }
+        Assertions.assertEquals(bytes, result.ByteCount());
+        // Hosts with identical bodies share their rules.
+        Assertions.assertEquals(new HashSet<>(bodies.values()).size(), result.DistinctBodyCount());
+        Assertions.assertSame(result.Robots().get("host0.com"), result.Robots().get("host7.com"));
+    }
+
+    // Small files are read, those above the map threshold mapped.
+    @Test
+    public void CompilesDirectory(@TempDir Path directory) throws IOException {
+        Map<String, String> bodies = Bodies();
+        StringBuilder big = new StringBuilder("user-agent: FooBot\n");
+        while (big.length() < 100 << 10) {
+            big.append("disallow: /b\n");
+        }
+        bodies.put("big.com", big.append("allow: /a\n").toString());
+        for (Map.Entry<String, String> entry : bodies.entrySet()) {
+            Files.write(directory.resolve(entry.getKey() + ".txt"), entry.getValue().getBytes(StandardCharsets.UTF_8));
+        }
+        RobotsBulkCompiler compiler = new RobotsBulkCompiler(new ForkJoinPool(4));
+        CheckResult(bodies, compiler.CompileDirectory(directory));
+    }
+
+    // Entries straddling window boundaries, or bigger than a window, are
+    // mapped on their own.
+    @Test
+    public void CompilesArchive(@TempDir Path directory) throws IOException {
+        Map<String, String> bodies = Bodies();
+        StringBuilder big = new StringBuilder("user-agent: FooBot\n");
+        while (big.length() < 5000) {
+            big.append("disallow: /b\n");
+        }
+        bodies.put("big.com", big.toString());
+        Path archive = directory.resolve("dump");
+        try (OutputStream out = Files.newOutputStream(archive)) {
+            for (Map.Entry<String, String> entry : bodies.entrySet()) {
+                RobotsBulkCompiler.AppendArchiveEntry(out, entry.getKey(),
+                        entry.getValue().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        for (int window_size : new int[]{1000, 1 << 20}) {
+            RobotsBulkCompiler compiler = new RobotsBulkCompiler(new ForkJoinPool(4),
+                    CompiledRobots.Engine.AUTO, window_size);
+            CheckResult(bodies, compiler.CompileArchive(archive));
+        }
+
+        // A truncated archive fails as a whole.
+        byte[] bytes = Files.readAllBytes(archive);
+        Files.write(archive, Arrays.copyOf(bytes, bytes.length - 3));
+        Assertions.assertThrows(IOException.class,
+                () -> new RobotsBulkCompiler(ForkJoinPool.commonPool()).CompileArchive(archive));
+    }
+}
@@ -0,0 +1,151 @@
+package com.github.itechbear.robotstxt;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+class RobotsCacheTest {
+    private static final String kRobotsTxt =
+            "user-agent: FooBot\n" +
+                    "disallow: /\n";
+
+    @Test
+    public void HitsAndMisses() {
+        RobotsCache cache = new RobotsCache(Long.MAX_VALUE);
+        Assertions.assertNull(cache.Get("foo.bar"));
+        cache.Put("foo.bar", kRobotsTxt);
+        CompiledRobots robots = cache.Get("foo.bar");
+        Assertions.assertNotNull(robots);
+        Assertions.assertFalse(robots.OneAgentAllowedByRobots("FooBot", "http://foo.bar/x"));
+        Assertions.assertEquals(1, cache.HitCount());
+        Assertions.assertEquals(1, cache.MissCount());
+
+        AtomicInteger loads = new AtomicInteger();
+        cache.Get("bar.baz", host -> {
+            loads.incrementAndGet();
+            return kRobotsTxt;
+        });
+        cache.Get("bar.baz", host -> {
+            loads.incrementAndGet();
+            return kRobotsTxt;
+        });
+        Assertions.assertEquals(1, loads.get());
+        Assertions.assertEquals(2, cache.Size());
+
+        // A failed load is not cached.
+        Assertions.assertNull(cache.Get("baz.qux", host -> null));
+        Assertions.assertEquals(2, cache.Size());
+        Assertions.assertNotNull(cache.Get("baz.qux", host -> kRobotsTxt));
+        Assertions.assertThrows(NullPointerException.class, () -> cache.Put("baz.qux", (String) null));
+    }
+
+    @Test
+    public void EntriesExpireAfterTtl() {
+        AtomicLong now = new AtomicLong();
+        RobotsCache cache = new RobotsCache(Long.MAX_VALUE, 100, now::get);
+        cache.Put("foo.bar", kRobotsTxt);
+        now.set(99);
+        Assertions.assertNotNull(cache.Get("foo.bar"));
+        now.set(100);
+        Assertions.assertNull(cache.Get("foo.bar"));
+        Assertions.assertEquals(1, cache.ExpirationCount());
+        Assertions.assertEquals(0, cache.Size());
+        Assertions.assertEquals(0, cache.Weight());
+    }
+
+    @Test
+    public void LeastRecentlyUsedEntriesAreEvictedByWeight() {
+        long weight = CompiledRobots.Compile(kRobotsTxt).EstimatedSize();
+        RobotsCache cache = new RobotsCache(2 * weight);
+        // Distinct bodies of the same weight, so that none are shared.
+        cache.Put("a", kRobotsTxt);
+        cache.Put("b", kRobotsTxt.replace("FooBot", "BarBot"));
+        Assertions.assertEquals(2 * weight, cache.Weight());
+        // Touch "a" so that "b" is the least recently used entry.
+        Assertions.assertNotNull(cache.Get("a"));
+        cache.Put("c", kRobotsTxt.replace("FooBot", "BazBot"));
+        Assertions.assertEquals(1, cache.EvictionCount());
+        Assertions.assertNull(cache.Get("b"));
+        Assertions.assertNotNull(cache.Get("a"));
+        Assertions.assertNotNull(cache.Get("c"));
+
+        // Bigger rule sets weigh more.
+        Assertions.assertTrue(CompiledRobots.Compile(kRobotsTxt + "allow: /x/\n").EstimatedSize() > weight);
+    }
+
+    @Test
+    public void IdenticalBodiesShareRules() {
+        long weight = CompiledRobots.Compile(kRobotsTxt).EstimatedSize();
+        RobotsCache cache = new RobotsCache(Long.MAX_VALUE);
+        CompiledRobots robots = cache.Put("a", kRobotsTxt);
+        Assertions.assertSame(robots, cache.Put("b", kRobotsTxt));
+        Assertions.assertSame(robots, cache.Put("c", new String(kRobotsTxt.toCharArray())));
+        Assertions.assertNotSame(robots, cache.Put("d", kRobotsTxt + "allow: /x/\n"));
+        Assertions.assertEquals(2, cache.DistinctBodyCount());
+        Assertions.assertEquals(2, cache.SharedPutCount());
+        Assertions.assertEquals(4, cache.Size());
+        long shared_weight = cache.Weight() - cache.Get("d").EstimatedSize();
+        Assertions.assertEquals(weight, shared_weight);
+
+        // The shared rules stay until the last host using them goes.
+        cache.Invalidate("a");
+        cache.Put("b", kRobotsTxt + "allow: /x/\n");
+        Assertions.assertEquals(2, cache.DistinctBodyCount());
+        cache.Invalidate("c");
+        Assertions.assertEquals(1, cache.DistinctBodyCount());
+        Assertions.assertEquals(cache.Get("d").EstimatedSize(), cache.Weight());
+        Assertions.assertSame(cache.Get("b"), cache.Get("d"));
+
+        // Rules stored directly are not shared, but weighed.
+        cache.Put("e", robots);
+        Assertions.assertEquals(1, cache.DistinctBodyCount());
+        Assertions.assertEquals(weight + cache.Get("d").EstimatedSize(), cache.Weight());
+        cache.InvalidateAll();
+        Assertions.assertEquals(0, cache.Weight());
+        Assertions.assertEquals(0, cache.DistinctBodyCount());
+    }
+
+    // Evicting a host whose rules others still use frees nothing, so less
+    // recently used hosts sharing rules stay while unshared ones can go.
+    @Test
+    public void EvictionSkipsHostsOfSharedRules() {
+        String x = "user-agent: *\ndisallow: /x/\n";
+        String y = "user-agent: *\ndisallow: /y/\n";
+        long shared_weight = CompiledRobots.Compile(kRobotsTxt).EstimatedSize();
+        long max_weight = shared_weight + CompiledRobots.Compile(x).EstimatedSize()
+                + CompiledRobots.Compile(y).EstimatedSize() - 1;
+        RobotsCache cache = new RobotsCache(max_weight);
+        for (String host : new String[]{"s1", "s2", "s3"}) {
+            cache.Put(host, kRobotsTxt);
+        }
+        cache.Put("x", x);
+        cache.Put("y", y);
+        Assertions.assertEquals(1, cache.EvictionCount());
+        Assertions.assertNull(cache.Get("x"));
+        for (String host : new String[]{"s1", "s2", "s3", "y"}) {
+            Assertions.assertNotNull(cache.Get(host), host);
+        }
+        Assertions.assertTrue(cache.Weight() <= max_weight);
+    }
+
+    // Bodies are digested in chunks, as their UTF-8 bytes would be.
+    @Test
+    public void DigestOfStringMatchesUtf8Bytes() {
+        StringBuilder big = new StringBuilder();
+        while (big.length() < 30000) {
+            big.append("disallow: /caf\u00e9/\u30c4/\uD83D\uDE00\n");
+        }
+        String[] bodies = {"", kRobotsTxt, big.toString(), "/a\uD800b", "/a\uDC00", "/a\uD800",
+                big.substring(0, 8191) + "\uD83D\uDE00" + big};
+        for (String body : bodies) {
+            ContentDigest expected = ContentDigest.Of(body.getBytes(StandardCharsets.UTF_8));
+            Assertions.assertEquals(expected, ContentDigest.Of(body));
+            Assertions.assertEquals(expected, ContentDigest.Of(ByteBuffer.wrap(body.getBytes(StandardCharsets.UTF_8))));
+        }
+        Assertions.assertNotEquals(ContentDigest.Of(kRobotsTxt), ContentDigest.Of(kRobotsTxt + " "));
+    }
+}
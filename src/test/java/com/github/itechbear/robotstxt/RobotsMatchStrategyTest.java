@@ -0,0 +1,86 @@
+package com.github.itechbear.robotstxt;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Random;
+
+class RobotsMatchStrategyTest {
+    // The position-set algorithm of the reference implementation.
+    private static boolean ReferenceMatches(String path, String pattern) {
+        int pathlen = path.length();
+        int[] pos = new int[pathlen + 1];
+        int numpos = 1;
+        for (int j = 0; j < pattern.length(); ++j) {
+            if (pattern.charAt(j) == '$' && j == pattern.length() - 1) {
+                return (pos[numpos - 1] == pathlen);
+            }
+            if (pattern.charAt(j) == '*') {
+                numpos = pathlen - pos[0] + 1;
+                for (int i = 1; i < numpos; i++) {
+                    pos[i] = pos[i - 1] + 1;
+                }
+            } else {
+                int newnumpos = 0;
+                for (int i = 0; i < numpos; i++) {
+                    if (pos[i] < pathlen && path.charAt(pos[i]) == pattern.charAt(j)) {
+                        pos[newnumpos++] = pos[i] + 1;
+                    }
+                }
+                numpos = newnumpos;
+                if (numpos == 0) return false;
+            }
+        }
+        return true;
+    }
+
+    private static String RandomString(Random random, String chars, int max_len) {
+        StringBuilder s = new StringBuilder();
+        int len = random.nextInt(max_len);
+        for (int i = 0; i < len; ++i) {
+            s.append(chars.charAt(random.nextInt(chars.length())));
+        }
+        return s.toString();
+    }
+
+    @Test
+    public void MatchesLikeReference() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200000; ++i) {
+            String pattern = RandomString(random, "/ab*$", 10);
+            String path = RandomString(random, "/ab$", 12);
+            Assertions.assertEquals(ReferenceMatches(path, pattern),
+                    RobotsMatchStrategy.Matches(path, pattern), pattern + " " + path);
+        }
+    }
+
+    // Overlapping segments need the whole failure table.
+    @Test
+    public void RepeatedSegments() {
+        Assertions.assertTrue(RobotsMatchStrategy.Matches("/aabaabaaab", "/*aaab"));
+        Assertions.assertTrue(RobotsMatchStrategy.Matches("/abababc/x", "/*ababc*x$"));
+        Assertions.assertFalse(RobotsMatchStrategy.Matches("/abababd/x", "/*ababc*x$"));
+        Assertions.assertTrue(RobotsMatchStrategy.Matches("/ab/ab", "/*ab$"));
+        Assertions.assertFalse(RobotsMatchStrategy.Matches("/ab", "/*b*ab$"));
+    }
+
+    // A pattern made to blow up the position sets is checked in linear time.
+    @Test
+    public void HostilePatternIsFast() {
+        StringBuilder pattern = new StringBuilder("/");
+        StringBuilder path = new StringBuilder("/");
+        for (int i = 0; i < 2000; ++i) {
+            pattern.append("*a");
+        }
+        pattern.append("*b$");
+        for (int i = 0; i < 2083 * 8; ++i) {
+            path.append('a');
+        }
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            for (int i = 0; i < 100; ++i) {
+                Assertions.assertFalse(RobotsMatchStrategy.Matches(path.toString(), pattern.toString()));
+            }
+        });
+    }
+}
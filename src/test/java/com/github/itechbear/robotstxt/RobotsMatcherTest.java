@@ -3,12 +3,29 @@ package com.github.itechbear.robotstxt;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.nio.charset.StandardCharsets;
+
 class RobotsMatcherTest {
     public static boolean IsUserAgentAllowed(String robotstxt,
                                              String useragent,
                                              String url) {
         RobotsMatcher matcher = new RobotsMatcher();
-        return matcher.OneAgentAllowedByRobots(robotstxt, useragent, url);
+        boolean allowed = matcher.OneAgentAllowedByRobots(robotstxt, useragent, url);
+        // The compiled rules must agree with the matcher on every check.
+        Assertions.assertEquals(allowed,
+                CompiledRobots.Compile(robotstxt).OneAgentAllowedByRobots(useragent, url));
+        Assertions.assertEquals(allowed,
+                CompiledRobots.Compile(robotstxt.getBytes(StandardCharsets.UTF_8))
+                        .OneAgentAllowedByRobots(useragent, url));
+        for (CompiledRobots.Engine engine : CompiledRobots.Engine.values()) {
+            Assertions.assertEquals(allowed,
+                    CompiledRobots.Compile(robotstxt, engine).OneAgentAllowedByRobots(useragent, url),
+                    engine.toString());
+        }
+        OffHeapRobotsStore store = new OffHeapRobotsStore(1024);
+        store.Put("foo.bar", CompiledRobots.Compile(robotstxt));
+        Assertions.assertEquals(allowed, store.OneAgentAllowedByRobots("foo.bar", useragent, url));
+        return allowed;
     }
 
     // Google-specific: system test.
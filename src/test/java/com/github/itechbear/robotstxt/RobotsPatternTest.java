@@ -0,0 +1,48 @@
+package com.github.itechbear.robotstxt;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class RobotsPatternTest {
+    private static final String[] kPatterns = {
+            "", "/", "$", "*", "*$", "/$", "/*", "/**$", "/a", "/a$", "/a*", "/a**$", "/a$b",
+            "/a$*", "/*a", "/*a$", "/a*b", "/a*b$", "/$*", "/fish*.php", "/*.php$", "/x/$",
+    };
+
+    private static final String[] kPaths = {
+            "", "/", "/a", "/ab", "/a$b", "/a$", "/b/a", "/fish.php", "/fishheads/catfish.php?x",
+            "/x/", "/x/y", "/ba", "/aab",
+    };
+
+    @Test
+    public void Classification() {
+        Assertions.assertEquals(RobotsPattern.Kind.PREFIX, new RobotsPattern("/private/").GetKind());
+        Assertions.assertEquals(RobotsPattern.Kind.PREFIX, new RobotsPattern("/private/*").GetKind());
+        Assertions.assertEquals(RobotsPattern.Kind.PREFIX, new RobotsPattern("/private/*$").GetKind());
+        Assertions.assertEquals(RobotsPattern.Kind.PREFIX, new RobotsPattern("/a$b").GetKind());
+        Assertions.assertEquals(RobotsPattern.Kind.EXACT, new RobotsPattern("/index.html$").GetKind());
+        Assertions.assertEquals(RobotsPattern.Kind.WILDCARD, new RobotsPattern("/*.php$").GetKind());
+        Assertions.assertEquals(RobotsPattern.Kind.WILDCARD, new RobotsPattern("/a*b").GetKind());
+    }
+
+    // Every kind matches exactly like the general algorithm.
+    @Test
+    public void MatchesLikeRobotsMatchStrategy() {
+        RobotsMatchStrategy.Scratch scratch = new RobotsMatchStrategy.Scratch();
+        for (String pattern : kPatterns) {
+            RobotsPattern compiled = new RobotsPattern(pattern);
+            for (String path : kPaths) {
+                Assertions.assertEquals(RobotsMatchStrategy.Matches(path, pattern),
+                        compiled.Matches(path, scratch), pattern + " " + path);
+            }
+        }
+    }
+
+    @Test
+    public void IndexAlternative() {
+        Assertions.assertEquals("/$", RobotsPattern.IndexAlternative("/index.html"));
+        Assertions.assertEquals("/dir/$", RobotsPattern.IndexAlternative("/dir/index.htm"));
+        Assertions.assertNull(RobotsPattern.IndexAlternative("/index.html/a"));
+        Assertions.assertNull(RobotsPattern.IndexAlternative("/dir/"));
+    }
+}
@@ -0,0 +1,321 @@
+package com.github.itechbear.robotstxt;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+class RobotsTxtParserTest {
+    // Records every callback as "<line> <key>: <value>".
+    static class RecordingHandler implements RobotsParseHandler {
+        final List<String> events = new ArrayList<>();
+
+        public void HandleRobotsStart() {
+            events.clear();
+        }
+
+        public void HandleRobotsEnd() {
+        }
+
+        public void HandleUserAgent(int line_num, String value) {
+            events.add(line_num + " user-agent: " + value);
+        }
+
+        public void HandleAllow(int line_num, String value) {
+            events.add(line_num + " allow: " + value);
+        }
+
+        public void HandleDisallow(int line_num, String value) {
+            events.add(line_num + " disallow: " + value);
+        }
+
+        public void HandleSitemap(int line_num, String value) {
+            events.add(line_num + " sitemap: " + value);
+        }
+
+        public void HandleUnknownAction(int line_num, String action, String value) {
+            events.add(line_num + " " + action + ": " + value);
+        }
+    }
+
+    private static final String kRobotsTxt =
+            "User-Agent: foo\n" +
+                    "Allow: /some/path\r\n" +
+                    "User-Agent: bar # comment\n" +
+                    "\r\n" +
+                    "\r" +
+                    "Disallow /\t\n" +
+                    "Disallow:\n" +
+                    "Disallow: /ツ/%aa\n" +
+                    "Sitemap: http://foo.bar/ツ.xml\n" +
+                    "Crawl-delay: 1\n" +
+                    "   \t\n" +
+                    "Allow:\t/x/á";
+
+    static List<String> ParseString(String robots_body) {
+        RecordingHandler handler = new RecordingHandler();
+        Util.ParseRobotsTxt(robots_body, handler);
+        return handler.events;
+    }
+
+    static List<String> ParseBytes(byte[] robots_body) {
+        RecordingHandler handler = new RecordingHandler();
+        Util.ParseRobotsTxt(robots_body, handler);
+        return handler.events;
+    }
+
+    @Test
+    public void BytesParseLikeString() {
+        List<String> expected = ParseString(kRobotsTxt);
+        Assertions.assertEquals(8, expected.size());
+        Assertions.assertTrue(expected.contains("8 disallow: /%E3%83%84/%AA"));
+        Assertions.assertTrue(expected.contains("9 sitemap: http://foo.bar/ツ.xml"));
+        byte[] bytes = kRobotsTxt.getBytes(StandardCharsets.UTF_8);
+        Assertions.assertEquals(expected, ParseBytes(bytes));
+
+        // Heap and direct buffers, not starting at the beginning of their array.
+        byte[] padded = new byte[bytes.length + 4];
+        System.arraycopy(bytes, 0, padded, 2, bytes.length);
+        ByteBuffer heap = ByteBuffer.wrap(padded, 2, bytes.length).slice();
+        RecordingHandler handler = new RecordingHandler();
+        Util.ParseRobotsTxt(heap, handler);
+        Assertions.assertEquals(expected, handler.events);
+        Assertions.assertEquals(0, heap.position());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        Util.ParseRobotsTxt(direct, handler);
+        Assertions.assertEquals(expected, handler.events);
+    }
+
+    // The UTF-8 byte order mark, or a prefix of it, is skipped at the byte level.
+    @Test
+    public void ByteOrderMarkIsSkipped() {
+        byte[] body = "User-Agent: foo\nAllow: /AnyValue\n".getBytes(StandardCharsets.UTF_8);
+        List<String> expected = ParseBytes(body);
+        for (int bom_len = 1; bom_len <= 3; ++bom_len) {
+            byte[] with_bom = new byte[bom_len + body.length];
+            byte[] bom = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+            System.arraycopy(bom, 0, with_bom, 0, bom_len);
+            System.arraycopy(body, 0, with_bom, bom_len, body.length);
+            Assertions.assertEquals(expected, ParseBytes(with_bom));
+        }
+
+        // A broken BOM turns the first line into garbage.
+        byte[] broken = new byte[3 + body.length];
+        broken[0] = (byte) 0xEF;
+        broken[1] = 0x11;
+        broken[2] = (byte) 0xBF;
+        System.arraycopy(body, 0, broken, 3, body.length);
+        List<String> events = ParseBytes(broken);
+        Assertions.assertEquals(2, events.size());
+        Assertions.assertEquals("2 allow: /AnyValue", events.get(1));
+    }
+
+    // Values of rules are escaped from the bytes, so invalid UTF-8 survives.
+    @Test
+    public void NonAsciiBytesAreEscaped() {
+        byte[] body = {'A', 'l', 'l', 'o', 'w', ':', ' ', '/', (byte) 0xFF, 'a', '%', '2', 'f', '%'};
+        List<String> events = ParseBytes(body);
+        Assertions.assertEquals(1, events.size());
+        Assertions.assertEquals("1 allow: /%FFa%2F%", events.get(0));
+    }
+
+    // Same as RecordingHandler, but receiving views.
+    static class RecordingSliceHandler implements RobotsParseSliceHandler {
+        final List<String> events = new ArrayList<>();
+
+        public void HandleRobotsStart() {
+            events.clear();
+        }
+
+        public void HandleRobotsEnd() {
+        }
+
+        public void HandleUserAgent(int line_num, CharSequence value) {
+            events.add(line_num + " user-agent: " + value);
+        }
+
+        public void HandleAllow(int line_num, CharSequence value) {
+            events.add(line_num + " allow: " + value);
+        }
+
+        public void HandleDisallow(int line_num, CharSequence value) {
+            events.add(line_num + " disallow: " + value);
+        }
+
+        public void HandleSitemap(int line_num, CharSequence value) {
+            events.add(line_num + " sitemap: " + value);
+        }
+
+        public void HandleUnknownAction(int line_num, CharSequence action, CharSequence value) {
+            events.add(line_num + " " + action + ": " + value);
+        }
+    }
+
+    @Test
+    public void SliceHandlerSeesSameKeysAndValues() {
+        List<String> expected = ParseString(kRobotsTxt);
+        RecordingSliceHandler handler = new RecordingSliceHandler();
+        Util.ParseRobotsTxt(kRobotsTxt, handler);
+        Assertions.assertEquals(expected, handler.events);
+        Util.ParseRobotsTxt(kRobotsTxt.getBytes(StandardCharsets.UTF_8), handler);
+        Assertions.assertEquals(expected, handler.events);
+        // Non-ASCII keys of a byte body are decoded.
+        Util.ParseRobotsTxt("Ünknown: ü\nUser-agent: Bötchen".getBytes(StandardCharsets.UTF_8), handler);
+        Assertions.assertEquals("1 Ünknown: %C3%BC", handler.events.get(0));
+        Assertions.assertEquals("2 user-agent: Bötchen", handler.events.get(1));
+    }
+
+    // Chars of a line past the maximum line length are ignored.
+    @Test
+    public void LongLinesAreTruncated() {
+        StringBuilder robotstxt = new StringBuilder("Disallow: /");
+        while (robotstxt.length() < 20000) {
+            robotstxt.append('a');
+        }
+        robotstxt.append("\nAllow: /b\n");
+        List<String> events = ParseString(robotstxt.toString());
+        Assertions.assertEquals(2, events.size());
+        Assertions.assertEquals("1 disallow: ".length() + (2083 << 3) - 1 - "Disallow: ".length(),
+                events.get(0).length());
+        Assertions.assertEquals("2 allow: /b", events.get(1));
+        Assertions.assertEquals(events, ParseBytes(robotstxt.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // Hands out at most 'chunk' bytes per read, to split lines, CRLFs and the
+    // BOM across reads.
+    static class ChunkedInputStream extends ByteArrayInputStream {
+        private final int chunk_;
+
+        ChunkedInputStream(byte[] bytes, int chunk) {
+            super(bytes);
+            this.chunk_ = chunk;
+        }
+
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, chunk_));
+        }
+    }
+
+    static List<String> ParseStream(InputStream robots_body, long max_bytes) throws IOException {
+        RecordingSliceHandler handler = new RecordingSliceHandler();
+        Util.ParseRobotsTxt(robots_body, max_bytes, handler);
+        return handler.events;
+    }
+
+    @Test
+    public void StreamParsesLikeBytes() throws IOException {
+        StringBuilder long_line = new StringBuilder("Disallow: /");
+        while (long_line.length() < 20000) {
+            long_line.append('a');
+        }
+        String[] bodies = {kRobotsTxt, "\uFEFF" + kRobotsTxt, "\uFEFFa\r\n\r\n\rb: c", "",
+                long_line + "\r\nAllow: /b\r\n", long_line.toString()};
+        for (String body : bodies) {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            List<String> expected = ParseBytes(bytes);
+            for (int chunk : new int[]{1, 2, 3, 7, 8192}) {
+                Assertions.assertEquals(expected,
+                        ParseStream(new ChunkedInputStream(bytes, chunk), Long.MAX_VALUE), body + " " + chunk);
+            }
+            RecordingHandler handler = new RecordingHandler();
+            Util.ParseRobotsTxt(Channels.newChannel(new ChunkedInputStream(bytes, 5)), handler);
+            Assertions.assertEquals(expected, handler.events);
+        }
+    }
+
+    // Only the first bytes up to the cap are parsed, as if the body ended there.
+    @Test
+    public void StreamStopsAtMaxBytes() throws IOException {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; body.length() < 600 * 1024; ++i) {
+            body.append("Disallow: /").append(i).append('\n');
+        }
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        for (int max_bytes : new int[]{0, 1, 15, 16, 17, 1000}) {
+            Assertions.assertEquals(ParseBytes(Arrays.copyOf(bytes, max_bytes)),
+                    ParseStream(new ChunkedInputStream(bytes, 7), max_bytes));
+        }
+        RecordingHandler handler = new RecordingHandler();
+        Util.ParseRobotsTxt(new ByteArrayInputStream(bytes), handler);
+        Assertions.assertEquals(ParseBytes(Arrays.copyOf(bytes, Util.kMaxRobotsBytes)), handler.events);
+    }
+
+    // Splitting the body at every possible pair of positions gives the same
+    // callbacks, also when a split falls inside a CRLF, the BOM or a UTF-8
+    // sequence.
+    @Test
+    public void IncrementalParseResumesAtAnyByte() {
+        byte[] bytes = ("\uFEFF" + kRobotsTxt + "\r\n\r").getBytes(StandardCharsets.UTF_8);
+        List<String> expected = ParseBytes(bytes);
+        RecordingSliceHandler handler = new RecordingSliceHandler();
+        IncrementalRobotsTxtParser parser = new IncrementalRobotsTxtParser(handler);
+        for (int first = 0; first <= bytes.length; ++first) {
+            for (int second = first; second <= bytes.length; ++second) {
+                parser.Feed(ByteBuffer.wrap(bytes, 0, first));
+                parser.Feed(bytes, first, second - first);
+                ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length - second);
+                direct.put(bytes, second, bytes.length - second).flip();
+                parser.Feed(direct);
+                Assertions.assertFalse(direct.hasRemaining());
+                parser.Finish();
+                Assertions.assertEquals(expected, handler.events, first + " " + second);
+            }
+        }
+    }
+
+    @Test
+    public void IncrementalParseStopsAtMaxBytes() {
+        byte[] bytes = kRobotsTxt.getBytes(StandardCharsets.UTF_8);
+        RecordingSliceHandler handler = new RecordingSliceHandler();
+        IncrementalRobotsTxtParser parser = new IncrementalRobotsTxtParser(handler, 40);
+        Assertions.assertEquals(40, parser.RemainingBytes());
+        parser.Feed(bytes, 0, 30);
+        Assertions.assertEquals(10, parser.RemainingBytes());
+        parser.Feed(bytes, 30, bytes.length - 30);
+        Assertions.assertEquals(0, parser.RemainingBytes());
+        parser.Finish();
+        Assertions.assertEquals(ParseBytes(Arrays.copyOf(bytes, 40)), handler.events);
+
+        // An empty body still starts and ends.
+        parser.Finish();
+        Assertions.assertEquals(ParseBytes(new byte[0]), handler.events);
+    }
+
+    // Rules of groups for other agents are skipped, with groups delimited as
+    // by RobotsMatcher: their rules do not end them.
+    @Test
+    public void AgentFilterSkipsOtherGroups() {
+        String robots_txt = "user-agent: BarBot\n" +
+                "disallow: /b\n" +
+                "user-agent: FOOBOT/1.0\n" +
+                "allow: /f\n" +
+                "user-agent: BazBot\n" +
+                "disallow: /z\n" +
+                "sitemap: /s\n" +
+                "user-agent: QuxBot\n" +
+                "disallow: /q\n" +
+                "user-agent: * foo\n" +
+                "disallow: /g\n";
+        RecordingHandler handler = new RecordingHandler();
+        Util.ParseRobotsTxt(robots_txt, handler, Arrays.asList("foobot"));
+        Assertions.assertEquals(Arrays.asList(
+                "1 user-agent: BarBot",
+                "3 user-agent: FOOBOT/1.0",
+                "4 allow: /f",
+                "5 user-agent: BazBot",
+                "7 sitemap: /s",
+                "8 user-agent: QuxBot",
+                "10 user-agent: * foo",
+                "11 disallow: /g"), handler.events);
+    }
+}
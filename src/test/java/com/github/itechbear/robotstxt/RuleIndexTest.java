@@ -0,0 +1,98 @@
+package com.github.itechbear.robotstxt;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Function;
+
+class RuleIndexTest {
+    private static final String kPatternChars = "/ab*$";
+    private static final String kPathChars = "/ab$";
+
+    private static String RandomString(Random random, String chars, int max_len) {
+        StringBuilder s = new StringBuilder("/");
+        int len = random.nextInt(max_len);
+        for (int i = 0; i < len; ++i) {
+            s.append(chars.charAt(random.nextInt(chars.length())));
+        }
+        return s.toString();
+    }
+
+    private static CompiledRobots.Rule[] RandomRules(Random random) {
+        CompiledRobots.Rule[] rules = new CompiledRobots.Rule[random.nextInt(3 * RuleIndex.kMinRulesForTrie)];
+        for (int i = 0; i < rules.length; ++i) {
+            String pattern = RandomString(random, kPatternChars, 6);
+            if (random.nextInt(8) == 0) {
+                pattern += "/index.htm";
+            }
+            rules[i] = new CompiledRobots.Rule(random.nextBoolean()
+                    ? ParsedRobotsKey.KeyType.ALLOW : ParsedRobotsKey.KeyType.DISALLOW, pattern, i + 1);
+        }
+        return rules;
+    }
+
+    // Any index answers like trying the rules one by one.
+    static void CheckAgainstLinear(Function<CompiledRobots.Rule[], RuleIndex> factory) {
+        Random random = new Random(42);
+        RobotsMatchStrategy strategy = new LongestMatchRobotsMatchStrategy();
+        RobotsMatchStrategy.Scratch scratch = new RobotsMatchStrategy.Scratch();
+        for (int round = 0; round < 300; ++round) {
+            CompiledRobots.Rule[] rules = RandomRules(random);
+            RuleIndex expected = new LinearRuleIndex(rules, strategy);
+            RuleIndex index = factory.apply(rules);
+            for (int i = 0; i < 50; ++i) {
+                String path = RandomString(random, kPathChars, 10);
+                CheckPath(expected, index, path, scratch, Arrays.toString(rules));
+            }
+            CheckPath(expected, index, "/index.htm", scratch, Arrays.toString(rules));
+            CheckPath(expected, index, "/", scratch, Arrays.toString(rules));
+            CheckPath(expected, index, "/\u00e4", scratch, Arrays.toString(rules));
+        }
+    }
+
+    private static void CheckPath(RuleIndex expected, RuleIndex index, String path,
+                                  RobotsMatchStrategy.Scratch scratch, String message) {
+        expected.Match(path, scratch);
+        long allow = scratch.allow_match;
+        long disallow = scratch.disallow_match;
+        index.Match(path, scratch);
+        Assertions.assertEquals(allow, scratch.allow_match, message + " " + path);
+        Assertions.assertEquals(disallow, scratch.disallow_match, message + " " + path);
+    }
+
+    @Test
+    public void PackedMatchesPreferPriorityThenEarlierLine() {
+        Assertions.assertTrue(RuleIndex.Pack(2, 10) > RuleIndex.Pack(1, 1));
+        Assertions.assertTrue(RuleIndex.Pack(2, 1) > RuleIndex.Pack(2, 10));
+        Assertions.assertTrue(RuleIndex.Pack(0, 10) > RuleIndex.kNoMatch);
+        Assertions.assertTrue(RuleIndex.kNoMatch > RuleIndex.Pack(-1, 1));
+        Assertions.assertEquals(7, RuleIndex.Priority(RuleIndex.Pack(7, 3)));
+        Assertions.assertEquals(3, RuleIndex.Line(RuleIndex.Pack(7, 3)));
+        Assertions.assertEquals(-1, RuleIndex.Priority(RuleIndex.kNoMatch));
+    }
+
+    @Test
+    public void TrieMatchesLikeLinear() {
+        CheckAgainstLinear(TrieRuleIndex::new);
+    }
+
+    @Test
+    public void AutomatonMatchesLikeLinear() {
+        CheckAgainstLinear(AutomatonRuleIndex::Create);
+    }
+
+    // Patterns blowing up the number of states are left to the trie.
+    @Test
+    public void AutomatonGivesUpOnTooManyStates() {
+        CompiledRobots.Rule[] rules = new CompiledRobots.Rule[24];
+        for (int i = 0; i < rules.length; ++i) {
+            rules[i] = new CompiledRobots.Rule(ParsedRobotsKey.KeyType.DISALLOW,
+                    "/*" + (char) ('a' + i) + "*" + (char) ('a' + (i + 1) % 24) + "$", i + 1);
+        }
+        Assertions.assertNull(AutomatonRuleIndex.Create(rules));
+        Assertions.assertTrue(RuleIndex.Create(rules, new LongestMatchRobotsMatchStrategy(),
+                CompiledRobots.Engine.AUTOMATON) instanceof TrieRuleIndex);
+    }
+}
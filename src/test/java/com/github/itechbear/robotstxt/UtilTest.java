@@ -3,14 +3,28 @@ package com.github.itechbear.robotstxt;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.nio.charset.StandardCharsets;
+
 class UtilTest {
     static void TestPath(String url, String expected_path) {
         Assertions.assertEquals(expected_path, Util.GetPathParamsQuery(url));
+        // The view of the path in the url, also of its bytes.
+        Assertions.assertEquals(expected_path, new PathView().Reset(url).toString());
+        byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+        CharSlice url_bytes = new CharSlice().Reset(bytes, 0, bytes.length);
+        long range = Util.FindPathParamsQuery(url_bytes);
+        Assertions.assertEquals(expected_path, (Util.PathNeedsLeadingSlash(url_bytes, range) ? "/" : "")
+                + url.substring(Util.PathBegin(range), Util.PathEnd(range)));
     }
 
     static void TestEscape(String url, String expected) {
         String escaped_value = Util.MaybeEscapePattern(url);
         Assertions.assertEquals(expected, escaped_value);
+        if (expected.equals(url)) {
+            Assertions.assertSame(url, escaped_value);
+        }
+        byte[] bytes = ("\n" + url + "\n").getBytes(StandardCharsets.UTF_8);
+        Assertions.assertEquals(expected, Util.MaybeEscapePattern(bytes, 1, bytes.length - 2));
     }
 
     @Test
@@ -44,5 +58,34 @@ class UtilTest {
         TestEscape("á", "%C3%A1");
         TestEscape("%aa", "%AA");
         TestEscape("/abc/ツ", "/abc/%E3%83%84");
+        TestEscape("/\uD83D\uDE00", "/%F0%9F%98%80");
+        TestEscape("/a%", "/a%");
+        TestEscape("/a%a", "/a%a");
+        TestEscape("/%2f%", "/%2F%");
+        TestEscape("/a%2", "/a%2");
+        TestEscape("/a/%2F/%2f", "/a/%2F/%2F");
+        TestEscape("/%Fa/b/\u00fc%aF", "/%FA/b/%C3%BC%AF");
+        TestEscape("/%2F/\u00e4", "/%2F/%C3%A4");
+        TestEscape("/%zz%a/", "/%zz%a/");
+    }
+
+    // The lookup tables classify every char like the definitions they replace.
+    @Test
+    void charClasses() {
+        for (int i = 0; i <= Character.MAX_VALUE; ++i) {
+            char c = (char) i;
+            boolean letter = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+            Assertions.assertEquals(letter, Util.isEnglishLetter(c));
+            Assertions.assertEquals(letter || c == '-' || c == '_' ? 1 : 0,
+                    Util.AgentTokenLength(String.valueOf(c)));
+            Assertions.assertEquals(Character.isWhitespace(c), Util.IsGlobalAgent("*" + c + "x"));
+            Assertions.assertEquals("/?;".indexOf(c) >= 0 ? 0 : -1, Util.FindFirstCharOf(String.valueOf(c), "/?;", 0));
+        }
+        for (int b = Byte.MIN_VALUE; b <= Byte.MAX_VALUE; ++b) {
+            Assertions.assertEquals("0123456789abcdefABCDEF".indexOf(b) >= 0, Util.IsHexDigit((byte) b));
+        }
+        Assertions.assertTrue(Util.IsGlobalAgent("*"));
+        Assertions.assertFalse(Util.IsGlobalAgent("*x"));
+        Assertions.assertEquals(7, Util.AgentTokenLength("Foo_B-t/1.0"));
     }
-}
\ No newline at end of file
+}